@@ -0,0 +1,95 @@
+package pc.bqueue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Contention-aware exponential back-off.
+ *
+ * Unlike the constants of {@link WaitStrategy}, an instance keeps state
+ * and is meant to be owned by a single structure (and its rooms), so
+ * contention on one structure does not slow down operations on another.
+ *
+ * An operation spins for its first failed attempts. Later attempts park
+ * for a random delay whose bound starts at the learned bound and doubles
+ * on every further attempt. The learned bound doubles whenever an
+ * operation had to park, and shrinks by a quarter whenever one succeeds
+ * at once, so it follows the recent contention on the structure. Only
+ * contended operations are reported (see {@link WaitStrategy#done}):
+ * waits on a full or empty structure use the bound but do not grow it.
+ * The bound is only written when it changes, so it stays mostly
+ * read-only both at low and at saturated contention.
+ */
+public final class AdaptiveBackoff implements WaitStrategy {
+
+  private final int spins, minDelay, maxDelay;
+
+  /**
+   * Learned delay bound, in nanoseconds. Updates are racy on purpose:
+   * a lost update only delays adaptation.
+   */
+  private volatile int bound;
+
+  /**
+   * Constructor, using {@link Backoff#SPIN_LIMIT}, {@link Backoff#MIN_DELAY}
+   * and {@link Backoff#MAX_DELAY}.
+   */
+  public AdaptiveBackoff() {
+    this(Backoff.SPIN_LIMIT, Backoff.MIN_DELAY, Backoff.MAX_DELAY);
+  }
+
+  /**
+   * Constructor.
+   * @param spins Number of attempts that only spin.
+   * @param minDelay Minimum delay bound, in nanoseconds.
+   * @param maxDelay Maximum delay bound, in nanoseconds.
+   * @throws IllegalArgumentException if {@code spins < 0},
+   *         {@code minDelay <= 0} or {@code maxDelay < minDelay}.
+   */
+  public AdaptiveBackoff(int spins, int minDelay, int maxDelay) {
+    if (spins < 0 || minDelay <= 0 || maxDelay < minDelay) {
+      throw new IllegalArgumentException();
+    }
+    this.spins = spins;
+    this.minDelay = minDelay;
+    this.maxDelay = maxDelay;
+    bound = minDelay;
+  }
+
+  @Override
+  public void idle(int attempt) {
+    attempt = Backoff.saturate(attempt);
+    if (attempt < spins) {
+      Thread.onSpinWait();
+    } else {
+      long b = Math.min(maxDelay, (long) bound << Math.min(attempt - spins, 30));
+      LockSupport.parkNanos(1 + ThreadLocalRandom.current().nextLong(b));
+    }
+  }
+
+  @Override
+  public void done(int attempts) {
+    attempts = Backoff.saturate(attempts);
+    int b = bound;
+    if (attempts > spins) {
+      if (b < maxDelay) {
+        bound = (int) Math.min(maxDelay, 2L * b);
+      }
+    } else if (attempts == 0 && b > minDelay) {
+      bound = Math.max(minDelay, b - Math.max(1, b >> 2));
+    }
+  }
+
+  /**
+   * Get the learned delay bound (for monitoring).
+   * @return The bound, in nanoseconds.
+   */
+  public int currentBound() {
+    return bound;
+  }
+
+  @Override
+  public String toString() {
+    return "adaptive";
+  }
+}
@@ -0,0 +1,174 @@
+package pc.bqueue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import pc.util.PaddedAtomicReference;
+
+/**
+ * Rooms utility class - original implementation, with an immutable 
+ * state object replaced on every transition.
+ * 
+ * Kept for comparison with {@link Rooms} in {@link RoomsBenchmark}.
+ */
+public final class AllocatingRooms implements RoomSynchronizer {
+
+  /**
+   * Number of rooms.
+   */
+  private final int numberOfRooms;
+
+  /**
+   * Wait strategy for failed state transitions.
+   */
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Current state.
+   */
+  private final AtomicReference<State> currentState;
+
+  /**
+   * Constructor.
+   * 
+   * @param n Number of rooms.
+   * @param backoff Enable / disable the use of back-off
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public AllocatingRooms(int n, boolean backoff) throws IllegalArgumentException {
+    this(n, WaitStrategy.of(backoff), false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param n Number of rooms.
+   * @param backoff Enable / disable the use of back-off
+   * @param padded Keep the state reference on a cache line of its own.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public AllocatingRooms(int n, boolean backoff, boolean padded) throws IllegalArgumentException {
+    this(n, WaitStrategy.of(backoff), padded);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public AllocatingRooms(int n, WaitStrategy ws) throws IllegalArgumentException {
+    this(n, ws, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @param padded Keep the state reference on a cache line of its own.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public AllocatingRooms(int n, WaitStrategy ws, boolean padded) throws IllegalArgumentException {
+    if (n < 2) {
+      throw new IllegalArgumentException();
+    }
+    numberOfRooms = n;
+    waitStrategy = ws;
+    currentState = padded ? new PaddedAtomicReference<>(State.FREE) 
+                          : new AtomicReference<>(State.FREE);
+  }
+
+  @Override
+  public int count() {
+    return numberOfRooms;
+  }
+
+  @Override
+  public void enter(int r)  {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    
+    changeState(s -> s.onEnter(r));
+
+    if (currentState.get().room != r) {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public void leave(int r) {
+    if (r < 0 || r >= numberOfRooms)
+      throw new IllegalArgumentException();
+
+    changeState(s -> s.onLeave(r));
+  }
+
+  /**
+   * State change handling.
+   * @param f State transition.
+   * @return Old state before transition. 
+   */
+  private State changeState(UnaryOperator<State> f) {
+    State oldS, newS;
+    int attempt = 0;
+    while(true) {
+      oldS = currentState.get();
+      newS = f.apply(oldS);
+      if (oldS != newS && currentState.compareAndSet(oldS,newS)) {
+        break;
+      }
+      waitStrategy.idle(attempt++);
+    } 
+    return oldS;
+  }
+
+  /* State class */
+  private static class State {
+    static final State FREE = new State(-1, 0, 0);
+    final int count;
+    final int room;
+
+    State(int room, int count, int entering) {
+      this.room = room;
+      this.count = count;
+    }
+    
+    State onEnter(int r) {
+      State result;
+      if (this == FREE) {
+        result = new State(r, 1, 0);
+      } else if (room == r) {
+        result = new State(r, count+1, 0);
+      } else {
+        result = this;
+      }
+      return result;
+    }
+
+  
+    State onLeave(int r) {
+      if (room != r) {
+        throw new IllegalStateException();
+      }
+      return count == 1 ? FREE : new State(r, count - 1, 0);
+    }
+
+    @Override
+    public String toString() {
+      return room + "/" + count;
+    }
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends RoomsTest {
+    @Override
+    RoomSynchronizer createRooms(int numberOfRooms) {
+      return new AllocatingRooms(numberOfRooms, false);
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package pc.bqueue;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Interface for deques unbounded capacity.
  * 
@@ -46,4 +48,96 @@ public interface BDeque<E> {
    * @return Element removed from the deque.
    */
   E removeLast();
+
+  /**
+   * Add an element to the head of the deque without blocking.
+   * 
+   * Deques have unbounded capacity, so the element is always added.
+   * 
+   * @param elem Element to add.
+   * @return Always <code>true</code>.
+   */
+  default boolean offerFirst(E elem) {
+    addFirst(elem);
+    return true;
+  }
+
+  /**
+   * Add an element to the head of the deque, waiting up to the given time.
+   * 
+   * Deques have unbounded capacity, so the element is always added.
+   * 
+   * @param elem Element to add.
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return Always <code>true</code>.
+   */
+  default boolean offerFirst(E elem, long timeout, TimeUnit unit) {
+    return offerFirst(elem);
+  }
+
+  /**
+   * Add an element to the tail of the deque without blocking.
+   * 
+   * Deques have unbounded capacity, so the element is always added.
+   * 
+   * @param elem Element to add.
+   * @return Always <code>true</code>.
+   */
+  default boolean offerLast(E elem) {
+    addLast(elem);
+    return true;
+  }
+
+  /**
+   * Add an element to the tail of the deque, waiting up to the given time.
+   * 
+   * Deques have unbounded capacity, so the element is always added.
+   * 
+   * @param elem Element to add.
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return Always <code>true</code>.
+   */
+  default boolean offerLast(E elem, long timeout, TimeUnit unit) {
+    return offerLast(elem);
+  }
+
+  /**
+   * Remove an element from the head of the deque without blocking.
+   * 
+   * @return Element removed from the deque, or <code>null</code> if
+   *         the deque was empty.
+   */
+  E pollFirst();
+
+  /**
+   * Remove an element from the head of the deque, waiting up to the 
+   * given time for one to become available.
+   * 
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return Element removed from the deque, or <code>null</code> if
+   *         the deque was still empty when the timeout elapsed.
+   */
+  E pollFirst(long timeout, TimeUnit unit);
+
+  /**
+   * Remove an element from the tail of the deque without blocking.
+   * 
+   * @return Element removed from the deque, or <code>null</code> if
+   *         the deque was empty.
+   */
+  E pollLast();
+
+  /**
+   * Remove an element from the tail of the deque, waiting up to the 
+   * given time for one to become available.
+   * 
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return Element removed from the deque, or <code>null</code> if
+   *         the deque was still empty when the timeout elapsed.
+   */
+  E pollLast(long timeout, TimeUnit unit);
 }
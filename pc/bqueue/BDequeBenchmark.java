@@ -1,51 +1,135 @@
 package pc.bqueue;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import pc.util.Benchmark;
 import pc.util.Benchmark.BThread;
 
 /**
- * Benchmark program for stack implementations.
+ * Benchmark program for deque implementations.
+ *
+ * The workload is read from the command line (see {@link Workload}).
  */
 public class BDequeBenchmark {
 
-  private static final int DURATION = 5;
-  private static final int MAX_THREADS = 32;
+  private static final WaitStrategy[] WAIT_STRATEGIES = {
+    WaitStrategy.BUSY_SPIN, WaitStrategy.SPIN_THEN_YIELD,
+    WaitStrategy.SPIN_THEN_PARK, WaitStrategy.EXPONENTIAL_SLEEP
+  };
+
+  private static Workload workload;
 
   /**
-   * Program to run a benchmark over queue implementations.
-   * @param args Arguments are ignored.
+   * Program to run a benchmark over deque implementations.
+   * @param args Workload options (see {@link Workload#USAGE}).
    */
   public static void main(String[] args) {
-    //double serial = runBenchmark(1, new UStack<Integer>());
+    try {
+      workload = Workload.parse(args);
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(Workload.USAGE);
+      System.exit(1);
+    }
+    System.out.println(workload);
+    Workload.DequeMix[] mixes = workload.dequeMix != null 
+        ? new Workload.DequeMix[] { workload.dequeMix }
+        : new Workload.DequeMix[] { Workload.DequeMix.FIFO, Workload.DequeMix.STEALING,
+                                    Workload.DequeMix.GROWTH };
+    int initialCapacity = workload.maxThreads;
+
+    for (int t : workload.threadCounts()) {
+      for (Workload.DequeMix mix : mixes) {
+        if (mix == Workload.DequeMix.STEALING) {
+          // Owner-plus-thieves: thread 0 pushes / pops at the tail,
+          // the others steal from the head
+          for (WaitStrategy ws : WAIT_STRATEGIES) {
+            runBenchmark("Lock-free " + ws, t, mix, new LFDeque<Object>(initialCapacity,ws));
+            runBenchmark("Work-stealing " + ws, t, mix, new WSDeque<Object>(initialCapacity,ws));
+          }
+          runBenchmark("STM", t, mix, new STMDeque<Object>(initialCapacity));
+          runBenchmark("STM split", t, mix, new STMSplitDeque<Object>());
+          runBenchmark("STM packed", t, mix, new STMPackedDeque<Object>(initialCapacity));
+          runBenchmark("STM chunked", t, mix, new STMChunkedDeque<Object>());
+          continue;
+        }
+        if (mix == Workload.DequeMix.GROWTH) {
+          // Copying growth (array-based deques) against chunked growth
+          runGrowthBenchmark("Lock-free", t, 
+              () -> new LFDeque<Object>(initialCapacity,WaitStrategy.SPIN_THEN_YIELD));
+          runGrowthBenchmark("STM", t, () -> new STMDeque<Object>(initialCapacity));
+          runGrowthBenchmark("STM packed", t, () -> new STMPackedDeque<Object>(initialCapacity));
+          runGrowthBenchmark("STM split", t, () -> new STMSplitDeque<Object>());
+          runGrowthBenchmark("STM chunked", t, () -> new STMChunkedDeque<Object>());
+          continue;
+        }
+        for (WaitStrategy ws : WAIT_STRATEGIES) {
+          runBenchmark("Lock-free " + ws, t, mix, new LFDeque<Object>(initialCapacity,ws));
+          runBenchmark("Padded " + ws, t, mix, new LFDeque<Object>(initialCapacity,ws,true));
+        }
+        runBenchmark("Lock-free adaptive", t, mix, 
+            new LFDeque<Object>(initialCapacity,new AdaptiveBackoff()));
+        runBenchmark("STM", t, mix, new STMDeque<Object>(initialCapacity));
+        runBenchmark("STM split", t, mix, new STMSplitDeque<Object>());
+        runBenchmark("STM packed", t, mix, new STMPackedDeque<Object>(initialCapacity));
+        runBenchmark("STM chunked", t, mix, new STMChunkedDeque<Object>());
+      }
+    }
+  }
+
+  private static void runBenchmark(String desc, int threads, Workload.DequeMix mix, BDeque<Object> q) {
+    Benchmark.Operation op = mix == Workload.DequeMix.STEALING 
+        ? new StealingOperation(q) 
+        : new BDequeOperation(q, workload.producers(threads), mix == Workload.DequeMix.LIFO);
+    if (workload.warmup > 0) {
+      new Benchmark(threads, workload.warmup, op).run();
+    }
+    measure(desc, threads, mix, q, op, workload.counters(q));
+  }
 
-    for (int t = 2; t <= MAX_THREADS; t = t * 2) {
-      runBenchmark("Lock-free backoff=y", t, new LFDeque<Integer>(MAX_THREADS,true));
-      runBenchmark("Lock-free backoff=n", t, new LFDeque<Integer>(MAX_THREADS,false));
-      runBenchmark("STM", t, new STMDeque<Integer>(MAX_THREADS));
+  private static void runGrowthBenchmark(String desc, int threads, Supplier<BDeque<Object>> factory) {
+    GrowthOperation op = new GrowthOperation(factory);
+    if (workload.warmup > 0) {
+      op.restart(factory.get(), null);
+      new Benchmark(threads, workload.warmup, op).run();
     }
+    BDeque<Object> q = factory.get();
+    Counters counters = workload.counters(q);
+    op.restart(q, counters);
+    measure(desc, threads, Workload.DequeMix.GROWTH, q, op, counters);
   }
 
-  private static void runBenchmark(String desc, int threads, BDeque<Integer> q) {
-    Benchmark b = new Benchmark(threads, DURATION, new BDequeOperation(q));
+  private static void measure(String desc, int threads, Workload.DequeMix mix, BDeque<Object> q, 
+                              Benchmark.Operation op, Counters counters) {
+    Benchmark b = new Benchmark(threads, workload.duration, op, true, true);
     System.out.printf("%2d,%20s,%11s -> ", threads, desc, q.getClass().getSimpleName());
-    System.out.printf("%10.2f thousand ops/s per thread%n", b.run());
+    double throughput = b.run();
+    System.out.printf("%10.2f thousand ops/s per thread (%s), %8.2f bytes/op, %5d ms GC, latency (ns) %s%n",
+        throughput, mix.name().toLowerCase(), b.bytesPerStep(), b.gcMillis(), b.latency().summary());
+    if (counters != null) {
+      Counters.Snapshot events = counters.snapshot();
+      System.out.printf("%39s%s stm_rollbacks=%d%n", "", events, events.stmRollbacks());
+    }
   }
 
   private static class BDequeOperation implements Benchmark.Operation {
-    private final BDeque<Integer> queue;
+    private final BDeque<Object> queue;
+    private final int producers;
+    private final boolean lifo;
 
-    BDequeOperation(BDeque<Integer> q) {
+    BDequeOperation(BDeque<Object> q, int producers, boolean lifo) {
       this.queue = q;
+      this.producers = producers;
+      this.lifo = lifo;
     }
 
     public void teardown() {
-      for (int i = 0 ; i <= MAX_THREADS; i++) {
-        queue.addLast(i);
-      }
-      while (queue.size() > 0) {
-        queue.removeFirst();
+      while (queue.pollFirst() != null) {
+        // drain
       }
     }
 
@@ -53,15 +137,95 @@ public class BDequeBenchmark {
     public void step() {
       BThread t = (Benchmark.BThread) Thread.currentThread();
       ThreadLocalRandom rng = ThreadLocalRandom.current();
-      int role = t.getTId() % 2;
-      if (role == 0) {
-        int v = rng.nextInt(100);
-        queue.addFirst(v);
-      } else if (queue.size() > MAX_THREADS){
-        queue.removeLast();
+      if (t.getTId() < producers) {
+        if (lifo) {
+          queue.addLast(workload.element(rng));
+        } else {
+          queue.addFirst(workload.element(rng));
+        }
+        workload.pace(rng);
+      } else {
+        queue.pollLast();
+      }
+    }
+  }
+
+  private static class GrowthOperation implements Benchmark.Operation {
+    private final Supplier<BDeque<Object>> factory;
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+    private Counters counters;
+
+    // A deque and the number of elements added to it so far
+    private static final class Generation {
+      final BDeque<Object> deque;
+      final AtomicInteger added = new AtomicInteger();
+
+      Generation(BDeque<Object> deque) {
+        this.deque = deque;
+      }
+    }
+
+    GrowthOperation(Supplier<BDeque<Object>> factory) {
+      this.factory = factory;
+    }
+
+    /**
+     * Start over with a fresh deque. Must be called while no
+     * benchmark is running.
+     * @param q Fresh deque.
+     * @param c Counters already set on <code>q</code>, given to the 
+     *        following deques, or <code>null</code>.
+     */
+    void restart(BDeque<Object> q, Counters c) {
+      counters = c;
+      current.set(new Generation(q));
+    }
+
+    // No teardown: deques are dropped once replaced, and steps 
+    // never block.
+
+    @Override
+    public void step() {
+      ThreadLocalRandom rng = ThreadLocalRandom.current();
+      Generation g = current.get();
+      g.deque.addLast(workload.element(rng));
+      workload.pace(rng);
+      if (g.added.incrementAndGet() == workload.capacity()) {
+        // Exactly one thread replaces each deque
+        BDeque<Object> q = factory.get();
+        if (counters != null) {
+          ((Instrumentable) q).setCounters(counters);
+        }
+        current.set(new Generation(q));
       }
-      //Thread.yield();
+    }
+  }
+
+  private static class StealingOperation implements Benchmark.Operation {
+    private final BDeque<Object> deque;
+
+    StealingOperation(BDeque<Object> q) {
+      this.deque = q;
+    }
+
+    // No teardown: only the owner may touch the tail of a WSDeque,
+    // and steps never block.
 
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      ThreadLocalRandom rng = ThreadLocalRandom.current();
+      if (t.getTId() == 0) {
+        // Owner: spawn tasks, and run some of them locally
+        if (rng.nextInt(4) != 0 && deque.size() < workload.capacity()) {
+          deque.addLast(workload.element(rng));
+          workload.pace(rng);
+        } else {
+          deque.pollLast();
+        }
+      } else {
+        deque.pollFirst();
+      }
     }
   }
 }
@@ -2,6 +2,7 @@ package pc.bqueue;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cooperari.CSystem;
@@ -470,4 +471,36 @@ public abstract class BDequeTest {
         fail("Did you consider c = " + c.get() + " and  d=" + d.get() + " ?");
       }
     }
+
+    @Test
+    public void test12() {
+      BDeque<Integer> q = createBDeque(2);
+
+      assertNull(q.pollFirst());
+      assertNull(q.pollLast());
+      assertNull(q.pollFirst(1, TimeUnit.MILLISECONDS));
+      assertNull(q.pollLast(1, TimeUnit.MILLISECONDS));
+
+      assertTrue(q.offerFirst(1));
+      assertTrue(q.offerLast(10));
+      assertTrue(q.offerFirst(100, 1, TimeUnit.MILLISECONDS));
+      assertEquals(3, q.size());
+
+      assertEquals(100, (int) q.pollFirst());
+      assertEquals(10, (int) q.pollLast());
+      assertEquals(1, (int) q.pollLast());
+      assertNull(q.pollFirst());
+
+      AtomicInteger a = new AtomicInteger(), b = new AtomicInteger();
+
+      CSystem.forkAndJoin(
+        () -> a.set(q.pollFirst(1, TimeUnit.MINUTES)),
+        () -> b.set(q.pollLast(1, TimeUnit.MINUTES)),
+        () -> q.offerFirst(1000),
+        () -> q.offerLast(10000)
+      );
+
+      assertEquals(0, q.size());
+      assertEquals(11000, a.get() + b.get());
+    }
 }
@@ -1,5 +1,8 @@
 package pc.bqueue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Blocking queue interface.
  * 
@@ -31,6 +34,74 @@ public interface BQueue<E> {
    * @return Element removed from the queue.
    */
   E remove();
+
+  /**
+   * Add an element to the queue if there is space for it, without blocking.
+   * 
+   * @param elem Element to add.
+   * @return <code>true</code> if the element was added, <code>false</code>
+   *         if the queue was full.
+   */
+  boolean offer(E elem);
+
+  /**
+   * Add an element to the queue, waiting up to the given time
+   * for space to become available.
+   * 
+   * @param elem Element to add.
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return <code>true</code> if the element was added, <code>false</code>
+   *         if the queue was still full when the timeout elapsed.
+   */
+  boolean offer(E elem, long timeout, TimeUnit unit);
+
+  /**
+   * Remove an element from the queue if one is available, without blocking.
+   * 
+   * Since <code>null</code> signals an empty queue, callers relying
+   * on this method should not add <code>null</code> elements.
+   * 
+   * @return Element removed from the queue, or <code>null</code> if
+   *         the queue was empty.
+   */
+  E poll();
+
+  /**
+   * Remove an element from the queue, waiting up to the given time
+   * for one to become available.
+   * 
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @return Element removed from the queue, or <code>null</code> if
+   *         the queue was still empty when the timeout elapsed.
+   */
+  E poll(long timeout, TimeUnit unit);
+
+  /**
+   * Add all elements of a collection to the queue, in iteration order.
+   * 
+   * The operation MAY block the calling thread if the queue 
+   * has bounded capacity, until every element has been added.
+   * Elements of the same batch keep their relative order in the queue.
+   * 
+   * @param elems Elements to add.
+   */
+  void addAll(Collection<? extends E> elems);
+
+  /**
+   * Remove up to <code>max</code> elements from the queue into a collection.
+   * 
+   * The operation MUST block the calling thread while the queue 
+   * is empty. Once elements are available, it removes as many
+   * as possible (up to <code>max</code>) without blocking again.
+   * 
+   * @param dst Collection that receives the removed elements.
+   * @param max Maximum number of elements to remove.
+   * @return Number of elements removed (at least one).
+   * @throws IllegalArgumentException if {@code max <= 0}
+   */
+  int drainTo(Collection<? super E> dst, int max);
   
   /**
    * Constant (<code>-1</code>) returned by <code>capacity</code> to indicate queue has
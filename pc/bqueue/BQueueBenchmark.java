@@ -4,65 +4,279 @@ import java.util.concurrent.ThreadLocalRandom;
 
 import pc.util.Benchmark;
 import pc.util.Benchmark.BThread;
+import pc.util.UnexpectedException;
 
 /**
- * Benchmark program for stack implementations.
+ * Benchmark program for queue implementations.
+ *
+ * The workload is read from the command line (see {@link Workload}).
  */
 public class BQueueBenchmark {
 
-  private static final int DURATION = 5;
-  private static final int MAX_THREADS = 32;
+  private static final WaitStrategy[] WAIT_STRATEGIES = {
+    WaitStrategy.BUSY_SPIN, WaitStrategy.SPIN_THEN_YIELD,
+    WaitStrategy.SPIN_THEN_PARK, WaitStrategy.EXPONENTIAL_SLEEP
+  };
+
+  private static Workload workload;
 
   /**
    * Program to run a benchmark over queue implementations.
-   * @param args Arguments are ignored.
+   * @param args Workload options (see {@link Workload#USAGE}).
    */
   public static void main(String[] args) {
-    //double serial = runBenchmark(1, new UStack<Integer>());
+    try {
+      workload = Workload.parse(args);
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(Workload.USAGE);
+      System.exit(1);
+    }
+    System.out.println(workload);
+    int initialCapacity = workload.maxThreads;
+    int capacity = workload.capacity();
 
-    for (int t = 2; t <= MAX_THREADS; t = t * 2) {
-      runBenchmark("Monitor-based", t, new MBQueueU<Integer>(MAX_THREADS));
-      runBenchmark("Lock-free backoff=y", t, new LFBQueueU<Integer>(MAX_THREADS,true));
-      runBenchmark("Lock-free backoff=n", t, new LFBQueueU<Integer>(MAX_THREADS,false));
-      runBenchmark("STM", t, new STMBQueueU<Integer>(MAX_THREADS));
+    for (int t : workload.threadCounts()) {
+      runBenchmark("Monitor-based", t, new MBQueueU<Object>(initialCapacity));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        runBenchmark("Lock-free " + ws, t, new LFBQueueU<Object>(initialCapacity,ws));
+        runBenchmark("Padded " + ws, t, new LFBQueueU<Object>(initialCapacity,ws,true));
+      }
+      runBenchmark("Lock-free adaptive", t, new LFBQueueU<Object>(initialCapacity,new AdaptiveBackoff()));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        runBenchmark("Segmented " + ws, t, 
+            new LFSegmentedBQueue<Object>(LFSegmentedBQueue.DEFAULT_SEGMENT_SIZE,ws));
+      }
+      runBenchmark("STM", t, new STMBQueueU<Object>(initialCapacity));
+      runBenchmark("STM split", t, new STMSplitBQueueU<Object>());
+      runBenchmark("STM packed", t, new STMPackedBQueueU<Object>(initialCapacity));
+      runBenchmark("Monitor-based", t, new MBQueue<Object>(capacity));
+      runBenchmark("Two-lock", t, new TLBQueue<Object>(capacity));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        if (ws == WaitStrategy.BUSY_SPIN) {
+          // Pure spinning can starve the rooms of a full / empty LFBQueue
+          continue;
+        }
+        runBenchmark("Lock-free " + ws, t, new LFBQueue<Object>(capacity,ws));
+        runBenchmark("Padded " + ws, t, new LFBQueue<Object>(capacity,ws,true));
+        runBenchmark("Striped " + ws, t, 
+            new LFBQueue<Object>(capacity,ws,false,new StripedRooms(3,ws)));
+      }
+      runBenchmark("Lock-free adaptive", t, new LFBQueue<Object>(capacity,new AdaptiveBackoff()));
+      runBenchmark("Fair rooms", t, 
+          new LFBQueue<Object>(capacity,WaitStrategy.EXPONENTIAL_SLEEP,false,new FairRooms(3)));
+      runBenchmark("Parking rooms", t, 
+          new LFBQueue<Object>(capacity,WaitStrategy.EXPONENTIAL_SLEEP,false,new ParkingRooms(3)));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        runBenchmark("Lock-free " + ws, t, new LFRingBQueue<Object>(capacity,ws));
+      }
+      runBenchmark("STM", t, new STMBQueue<Object>(capacity));
+      runBenchmark("STM split", t, new STMSplitBQueue<Object>(capacity));
+      runBenchmark("STM packed", t, new STMPackedBQueue<Object>(capacity));
+      // Unboxed counterparts of the bounded queues above
+      runBenchmark("Monitor-based", t, new MIntBQueue(capacity));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        runBenchmark("Lock-free " + ws, t, new LFIntBQueue(capacity,ws));
+      }
+      runBenchmark("STM", t, new STMIntBQueue(capacity));
+      runBenchmark("Monitor-based", t, new MLongBQueue(capacity));
+      for (WaitStrategy ws : WAIT_STRATEGIES) {
+        runBenchmark("Lock-free " + ws, t, new LFLongBQueue(capacity,ws));
+      }
+      runBenchmark("STM", t, new STMLongBQueue(capacity));
+      // Single-consumer topologies: one producer, then t - 1 producers
+      if (!workload.allowsSingleConsumer()) {
+        continue;
+      }
+      if (t == 2) {
+        runBenchmark("SPSC Monitor-based", t, 1, new MBQueue<Object>(capacity));
+        runBenchmark("SPSC Lock-free", t, 1, new LFRingBQueue<Object>(capacity,false));
+        runBenchmark("SPSC", t, 1, BQueueFactory.<Object>create(1, 1, capacity));
+      }
+      runBenchmark("MPSC Monitor-based", t, t - 1, new MBQueueU<Object>(initialCapacity));
+      runBenchmark("MPSC Segmented", t, t - 1, 
+          new LFSegmentedBQueue<Object>(LFSegmentedBQueue.DEFAULT_SEGMENT_SIZE,false));
+      runBenchmark("MPSC", t, t - 1, BQueueFactory.<Object>create(t - 1, 1, BQueue.UNBOUNDED));
     }
   }
 
-  private static void runBenchmark(String desc, int threads, BQueue<Integer> q) {
-    Benchmark b = new Benchmark(threads, DURATION, new BQueueOperation(q));
+  private static void runBenchmark(String desc, int threads, BQueue<Object> q) {
+    measure(desc, threads, q, new BQueueOperation(q, workload.producers(threads)));
+  }
+
+  private static void runBenchmark(String desc, int threads, int producers, BQueue<Object> q) {
+    measure(desc, threads, q, new TopologyOperation(q, producers));
+  }
+
+  private static void runBenchmark(String desc, int threads, IntBQueue q) {
+    measure(desc, threads, q, new IntBQueueOperation(q, workload.producers(threads)));
+  }
+
+  private static void runBenchmark(String desc, int threads, LongBQueue q) {
+    measure(desc, threads, q, new LongBQueueOperation(q, workload.producers(threads)));
+  }
+
+  private static void measure(String desc, int threads, Object q, Benchmark.Operation op) {
+    if (workload.warmup > 0) {
+      new Benchmark(threads, workload.warmup, op).run();
+    }
+    Counters counters = workload.counters(q);
+    Benchmark b = new Benchmark(threads, workload.duration, op, true, true);
     System.out.printf("%2d,%20s,%11s -> ", threads, desc, q.getClass().getSimpleName());
-    System.out.printf("%10.2f thousand ops/s per thread%n", b.run());
+    double throughput = b.run();
+    System.out.printf("%10.2f thousand ops/s per thread, %8.2f bytes/op, %5d ms GC, latency (ns) %s%n",
+        throughput, b.bytesPerStep(), b.gcMillis(), b.latency().summary());
+    if (counters != null) {
+      Counters.Snapshot events = counters.snapshot();
+      System.out.printf("%39s%s stm_rollbacks=%d%n", "", events, events.stmRollbacks());
+    }
   }
 
   private static class BQueueOperation implements Benchmark.Operation {
-    private final BQueue<Integer> queue;
+    private final BQueue<Object> queue;
+    private final int producers;
     
-    BQueueOperation(BQueue<Integer> q) {
+    BQueueOperation(BQueue<Object> q, int producers) {
       this.queue = q;
+      this.producers = producers;
     }
 
     public void teardown() {
-      for (int i = 0 ; i <= MAX_THREADS; i++) {
-        queue.add(i);
+      // Consumers only poll, but producers may be blocked on a full
+      // queue: drain until nothing more shows up.
+      do {
+        while (queue.poll() != null) {
+          // drain
+        }
+        try {
+          Thread.sleep(10);
+        }
+        catch (InterruptedException e) {
+          throw new UnexpectedException(e);
+        }
+      } while (queue.size() > 0);
+    }
+    
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      ThreadLocalRandom rng = ThreadLocalRandom.current();
+      if (t.getTId() < producers) {
+        queue.add(workload.element(rng));
+        workload.pace(rng);
+      } else {
+        queue.poll();
+      }
+    }
+  }
+
+  private static class TopologyOperation implements Benchmark.Operation {
+    private final BQueue<Object> queue;
+    private final int producers;
+
+    TopologyOperation(BQueue<Object> q, int producers) {
+      this.queue = q;
+      this.producers = producers;
+    }
+
+    // No teardown: removing from another thread would break the 
+    // single-consumer contract. Steps never block, so threads 
+    // always see the completion flag.
+
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      ThreadLocalRandom rng = ThreadLocalRandom.current();
+      if (t.getTId() < producers) {
+        // Keep unbounded queues from growing without limit
+        if (queue.hasFixedCapacity() || queue.size() < workload.capacity()) {
+          queue.offer(workload.element(rng));
+          workload.pace(rng);
+        }
+      } else {
+        queue.poll();
       }
-      while (queue.size() > 0) {
-        queue.remove();
+    }
+  }
+
+  private static class IntBQueueOperation implements Benchmark.Operation {
+    // Elements are non-negative, so this value signals an empty queue
+    private static final int EMPTY = -1;
+
+    private final IntBQueue queue;
+    private final int producers;
+
+    IntBQueueOperation(IntBQueue q, int producers) {
+      this.queue = q;
+      this.producers = producers;
+    }
+
+    public void teardown() {
+      // As in BQueueOperation: drain until nothing more shows up.
+      do {
+        while (queue.pollInt(EMPTY) != EMPTY) {
+          // drain
+        }
+        try {
+          Thread.sleep(10);
+        }
+        catch (InterruptedException e) {
+          throw new UnexpectedException(e);
+        }
+      } while (queue.size() > 0);
+    }
+
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      ThreadLocalRandom rng = ThreadLocalRandom.current();
+      if (t.getTId() < producers) {
+        queue.addInt(rng.nextInt(100));
+        workload.pace(rng);
+      } else {
+        queue.pollInt(EMPTY);
       }
     }
-    
+  }
+
+  private static class LongBQueueOperation implements Benchmark.Operation {
+    // See IntBQueueOperation
+    private static final long EMPTY = -1;
+
+    private final LongBQueue queue;
+    private final int producers;
+
+    LongBQueueOperation(LongBQueue q, int producers) {
+      this.queue = q;
+      this.producers = producers;
+    }
+
+    public void teardown() {
+      // See IntBQueueOperation.teardown().
+      do {
+        while (queue.pollLong(EMPTY) != EMPTY) {
+          // drain
+        }
+        try {
+          Thread.sleep(10);
+        }
+        catch (InterruptedException e) {
+          throw new UnexpectedException(e);
+        }
+      } while (queue.size() > 0);
+    }
+
     @Override
     public void step() {
       BThread t = (Benchmark.BThread) Thread.currentThread();
       ThreadLocalRandom rng = ThreadLocalRandom.current();
-      int role = t.getTId() % 2;
-      if (role == 0) {
-        int v = rng.nextInt(100);
-        queue.add(v);
-      } else if (queue.size() > MAX_THREADS){
-        queue.remove();
+      if (t.getTId() < producers) {
+        queue.addLong(rng.nextLong(100));
+        workload.pace(rng);
+      } else {
+        queue.pollLong(EMPTY);
       }
-      //Thread.yield();
-     
     }
   }
 }
@@ -0,0 +1,58 @@
+package pc.bqueue;
+
+/**
+ * Factory of queues specialized for a declared usage.
+ *
+ * The implementation is chosen from the number of threads that will 
+ * add and remove elements, and from whether the queue is bounded:
+ * <ul>
+ * <li>bounded, one producer and one consumer: {@link SPSCBQueue};</li>
+ * <li>bounded, otherwise: {@link LFRingBQueue};</li>
+ * <li>unbounded, one consumer: {@link MPSCBQueueU};</li>
+ * <li>unbounded, otherwise: {@link LFSegmentedBQueue}.</li>
+ * </ul>
+ * The caller must honour the declared counts: the single-producer
+ * and single-consumer queues are not safe otherwise.
+ */
+public final class BQueueFactory {
+
+  /**
+   * Create a queue using busy-spin waiting.
+   * @param <E> Type of elements.
+   * @param producers Number of threads that may add elements.
+   * @param consumers Number of threads that may remove elements.
+   * @param capacity Queue capacity, or {@link BQueue#UNBOUNDED}.
+   * @return A new queue.
+   * @throws IllegalArgumentException if a thread count or the capacity
+   *         is not valid.
+   */
+  public static <E> BQueue<E> create(int producers, int consumers, int capacity) {
+    return create(producers, consumers, capacity, WaitStrategy.BUSY_SPIN);
+  }
+
+  /**
+   * Create a queue.
+   * @param <E> Type of elements.
+   * @param producers Number of threads that may add elements.
+   * @param consumers Number of threads that may remove elements.
+   * @param capacity Queue capacity, or {@link BQueue#UNBOUNDED}.
+   * @param ws Wait strategy for blocking operations.
+   * @return A new queue.
+   * @throws IllegalArgumentException if a thread count or the capacity
+   *         is not valid.
+   */
+  public static <E> BQueue<E> create(int producers, int consumers, int capacity, WaitStrategy ws) {
+    if (producers <= 0 || consumers <= 0 || (capacity <= 0 && capacity != BQueue.UNBOUNDED)) {
+      throw new IllegalArgumentException();
+    }
+    if (capacity == BQueue.UNBOUNDED) {
+      return consumers == 1 ? new MPSCBQueueU<>(ws)
+                            : new LFSegmentedBQueue<>(LFSegmentedBQueue.DEFAULT_SEGMENT_SIZE, ws);
+    }
+    return producers == 1 && consumers == 1 ? new SPSCBQueue<>(capacity, ws)
+                                            : new LFRingBQueue<>(capacity, ws);
+  }
+
+  // Private constructor (prevent undesirable instantiation).
+  private BQueueFactory() { }
+}
@@ -2,6 +2,10 @@ package pc.bqueue;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cooperari.CSystem;
@@ -344,4 +348,56 @@ public abstract class BQueueTest {
       fail("Did you consider c = " + c.get() + " and  d=" + d.get() + " ?");
     }
   }
+
+  @Test
+  public void test10() {
+    BQueue<Integer> q = createBQueue(4);
+    List<Integer> a = new ArrayList<>();
+    CSystem.forkAndJoin(
+        () -> { q.addAll(Arrays.asList(1, 10, 100)); },
+        () -> { q.addAll(Arrays.asList(1000, 10000)); },
+        () -> {
+          int n = 0;
+          while (n < 5) {
+            n += q.drainTo(a, 5 - n);
+          }
+        }
+        );
+    assertEquals(0, q.size());
+    assertEquals(5, a.size());
+    assertEquals(11111, a.stream().mapToInt(Integer::intValue).sum());
+    // Elements of the same batch keep their relative order.
+    assertTrue(a.indexOf(1) < a.indexOf(10));
+    assertTrue(a.indexOf(10) < a.indexOf(100));
+    assertTrue(a.indexOf(1000) < a.indexOf(10000));
+  }
+
+  @Test
+  public void test11() {
+    BQueue<Integer> q = createBQueue(1);
+    assertNull(q.poll());
+    assertTrue(q.offer(1));
+    if (q.hasFixedCapacity()) {
+      assertFalse(q.offer(10));
+      assertFalse(q.offer(10, 1, TimeUnit.MILLISECONDS));
+    } else {
+      assertTrue(q.offer(10));
+    }
+    assertEquals(1, (int) q.poll());
+    if (!q.hasFixedCapacity()) {
+      assertEquals(10, (int) q.poll());
+    }
+    assertNull(q.poll(1, TimeUnit.MILLISECONDS));
+
+    AtomicInteger a = new AtomicInteger();
+    AtomicInteger b = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> { a.set(q.poll(1, TimeUnit.MINUTES)); },
+        () -> { assertTrue(q.offer(10, 1, TimeUnit.MINUTES)); },
+        () -> { assertTrue(q.offer(100, 1, TimeUnit.MINUTES)); },
+        () -> { b.set(q.poll(1, TimeUnit.MINUTES)); }
+        );
+    assertEquals(0, q.size());
+    assertEquals(110, a.get() + b.get());
+  }
 }
@@ -1,7 +1,6 @@
 package pc.bqueue;
 
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Exponential back-off utility class.
@@ -18,30 +17,46 @@ public final class Backoff {
    */
   public static final int MAX_DELAY = 999_999; // not more than 1 millisecond
  
-  private static ThreadLocal<Integer> TLBOUND = 
-      ThreadLocal.withInitial(() -> MIN_DELAY);
+  /**
+   * Number of busy-spin rounds before {@link #pause} starts parking.
+   */
+  public static final int SPIN_LIMIT = 100;
 
   /**
-   * Delay thread using exponential back-off.
+   * Pause a retry loop that is bounded by a deadline.
+   * 
+   * The first {@link #SPIN_LIMIT} attempts only busy-spin; later ones park
+   * the thread for exponentially longer periods (up to {@link #MAX_DELAY}),
+   * but never past the deadline.
+   * 
+   * @param attempt Number of failed attempts so far.
+   * @param deadline Deadline, as given by <code>System.nanoTime()</code>.
+   * @return <code>false</code> if the deadline has already passed.
    */
-  public static void delay() {
-    Random rng = ThreadLocalRandom.current();
-    try {
-      int current_bound = TLBOUND.get();
-      int delay = 1 + rng.nextInt(current_bound);
-      Thread.sleep(0, delay);
-      TLBOUND.set(Math.min(MAX_DELAY, current_bound * 2));
+  public static boolean pause(int attempt, long deadline) {
+    long remaining = deadline - System.nanoTime();
+    if (remaining <= 0) {
+      return false;
     }
-    catch(InterruptedException e) {
-      throw new RuntimeException(e);
+    attempt = saturate(attempt);
+    if (attempt < SPIN_LIMIT) {
+      Thread.onSpinWait();
+    } else {
+      int shift = Math.min(attempt - SPIN_LIMIT, 20);
+      LockSupport.parkNanos(Math.min(remaining, Math.min(MAX_DELAY, MIN_DELAY << shift)));
     }
+    return true;
   }
-  
+
   /**
-   * Reset exponential back-off limit back to minimum.
+   * Saturate a count of failed attempts. Callers simply increment their
+   * count, so after a long enough wait it wraps around to a negative
+   * value; that value stands for a count past <code>Integer.MAX_VALUE</code>.
+   * @param attempt Number of failed attempts so far.
+   * @return <code>attempt</code>, or <code>Integer.MAX_VALUE</code> if negative.
    */
-  public static void reset() {
-    TLBOUND.set(MIN_DELAY);
+  static int saturate(int attempt) {
+    return attempt < 0 ? Integer.MAX_VALUE : attempt;
   }
 
   // Private constructor (prevent undesirable instantiation).
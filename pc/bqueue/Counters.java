@@ -0,0 +1,180 @@
+package pc.bqueue;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event counters of a queue or deque (see {@link Instrumentable}).
+ *
+ * Each event is counted in a {@link LongAdder}, so that updates from many
+ * threads do not contend. The {@link #DISABLED} instance counts nothing,
+ * and is what structures use until given counters of their own.
+ */
+public final class Counters {
+
+  /**
+   * Counted events.
+   */
+  public enum Event {
+    /** Calls to the operations of a queue or deque. */
+    OPERATIONS,
+    /** Failed CAS attempts to enter a room (not waits for another room to empty). */
+    ROOM_CAS_FAILURES,
+    /** Iterations of retry loops in lock-free operations. */
+    RETRIES,
+    /** Calls to <code>wait()</code> in monitor-based operations. */
+    WAITS,
+    /** Resizes of a backing array. */
+    RESIZES,
+    /** Elements copied by resizes. */
+    RESIZE_COPIES,
+    /** Executions of STM atomic blocks, including re-executions. */
+    STM_ATTEMPTS,
+    /** Committed STM atomic blocks. */
+    STM_COMMITS,
+    /** Explicit STM retries (<code>STM.retry()</code> and timed variants). */
+    STM_RETRIES
+  }
+
+  private static final Event[] EVENTS = Event.values();
+
+  /**
+   * Counters that count nothing.
+   */
+  public static final Counters DISABLED = new Counters(false);
+
+  /**
+   * One adder per event, or <code>null</code> if disabled.
+   */
+  private final LongAdder[] adders;
+
+  /**
+   * Constructor.
+   */
+  public Counters() {
+    this(true);
+  }
+
+  private Counters(boolean enabled) {
+    if (enabled) {
+      adders = new LongAdder[EVENTS.length];
+      for (int i = 0; i < adders.length; i++) {
+        adders[i] = new LongAdder();
+      }
+    } else {
+      adders = null;
+    }
+  }
+
+  /**
+   * Check if events are counted.
+   * @return <code>false</code> for {@link #DISABLED}.
+   */
+  public boolean enabled() {
+    return adders != null;
+  }
+
+  /**
+   * Count one event.
+   * @param e Event.
+   */
+  public void increment(Event e) {
+    if (adders != null) {
+      adders[e.ordinal()].increment();
+    }
+  }
+
+  /**
+   * Count several events.
+   * @param e Event.
+   * @param n Number of events.
+   */
+  public void add(Event e, long n) {
+    if (adders != null) {
+      adders[e.ordinal()].add(n);
+    }
+  }
+
+  /**
+   * Reset all counts to zero.
+   *
+   * Events counted concurrently with the reset may or may not be kept.
+   */
+  public void reset() {
+    if (adders != null) {
+      for (LongAdder a : adders) {
+        a.reset();
+      }
+    }
+  }
+
+  /**
+   * Take a snapshot of the counts.
+   *
+   * Each count is read once, but the counts are not read atomically
+   * as a whole while events are being counted.
+   *
+   * @return The snapshot.
+   */
+  public Snapshot snapshot() {
+    long[] values = new long[EVENTS.length];
+    if (adders != null) {
+      for (int i = 0; i < values.length; i++) {
+        values[i] = adders[i].sum();
+      }
+    }
+    return new Snapshot(values);
+  }
+
+  /**
+   * Immutable snapshot of counts.
+   */
+  public static final class Snapshot {
+    private final long[] values;
+
+    private Snapshot(long[] values) {
+      this.values = values;
+    }
+
+    /**
+     * Get the count of an event.
+     * @param e Event.
+     * @return The count.
+     */
+    public long get(Event e) {
+      return values[e.ordinal()];
+    }
+
+    /**
+     * Get the number of rolled-back STM atomic blocks.
+     * @return Attempts minus commits (explicit retries included).
+     */
+    public long stmRollbacks() {
+      return Math.max(0, get(Event.STM_ATTEMPTS) - get(Event.STM_COMMITS));
+    }
+
+    /**
+     * Get the difference from an earlier snapshot.
+     * @param earlier Earlier snapshot.
+     * @return Counts since <code>earlier</code>.
+     */
+    public Snapshot since(Snapshot earlier) {
+      long[] diff = new long[values.length];
+      for (int i = 0; i < diff.length; i++) {
+        diff[i] = values[i] - earlier.values[i];
+      }
+      return new Snapshot(diff);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Event e : EVENTS) {
+        if (sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append(e.name().toLowerCase()).append('=').append(get(e));
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package pc.bqueue;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pc.util.UnexpectedException;
+
+/**
+ * Rooms utility class - fair variant, rotating rooms in phases.
+ *
+ * While nobody waits, threads join the open room freely, as in
+ * {@link Rooms}. Once a thread waits for another room, the open room
+ * admits no more entrants. When it empties, the next room (in
+ * round-robin order) that has waiters is opened for all the threads
+ * waiting for it at that moment, and for nobody else until it
+ * empties in turn. A waiter is thus admitted within one rotation
+ * over the rooms. Later arrivals for that room wait for its next phase.
+ *
+ * Waiting threads block on a condition of their room. The time spent
+ * in {@link #enter} is recorded per room (see {@link #waitCount},
+ * {@link #meanWaitNanos}, {@link #maxWaitNanos} and
+ * {@link #waitPercentileNanos}).
+ */
+public final class FairRooms implements RoomSynchronizer {
+
+  private static final int FREE = -1;
+
+  // Number of power-of-two buckets of the wait-time histograms.
+  private static final int BUCKETS = 64;
+
+  /**
+   * Number of rooms.
+   */
+  private final int numberOfRooms;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Conditions signalled when a room is opened for its waiters.
+   */
+  private final Condition[] opened;
+
+  /**
+   * Open room, or <code>FREE</code>.
+   */
+  private int current = FREE;
+
+  /**
+   * Threads inside the open room.
+   */
+  private int occupants;
+
+  /**
+   * Waiters admitted to the open room that did not enter yet.
+   */
+  private int pendingAdmissions;
+
+  /**
+   * Per room: tickets handed out to waiters, waiters with a ticket below
+   * <code>admitted</code> may enter when the room is open, and waiters
+   * not admitted yet.
+   */
+  private final long[] tickets, admitted;
+  private final int[] waiting;
+  private int totalWaiting;
+
+  /**
+   * Wait-time statistics per room.
+   */
+  private final long[] waitCount, waitNanos, maxWaitNanos;
+  private final long[][] waitBuckets;
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public FairRooms(int n) throws IllegalArgumentException {
+    if (n < 2) {
+      throw new IllegalArgumentException();
+    }
+    numberOfRooms = n;
+    opened = new Condition[n];
+    for (int i = 0; i < n; i++) {
+      opened[i] = lock.newCondition();
+    }
+    tickets = new long[n];
+    admitted = new long[n];
+    waiting = new int[n];
+    waitCount = new long[n];
+    waitNanos = new long[n];
+    maxWaitNanos = new long[n];
+    waitBuckets = new long[n][BUCKETS];
+  }
+
+  @Override
+  public int count() {
+    return numberOfRooms;
+  }
+
+  @Override
+  public void enter(int r) {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    lock.lock();
+    try {
+      if (current == FREE || (current == r && totalWaiting == 0)) {
+        current = r;
+        occupants++;
+        record(r, 0);
+        return;
+      }
+      long start = System.nanoTime();
+      long ticket = tickets[r]++;
+      waiting[r]++;
+      totalWaiting++;
+      try {
+        while (current != r || ticket >= admitted[r]) {
+          opened[r].await();
+        }
+      }
+      catch (InterruptedException e) {
+        withdraw(r, ticket);
+        throw new UnexpectedException(e);
+      }
+      pendingAdmissions--;
+      occupants++;
+      record(r, System.nanoTime() - start);
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void leave(int r) {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    lock.lock();
+    try {
+      if (current != r || occupants == 0) {
+        throw new IllegalStateException();
+      }
+      occupants--;
+      if (occupants == 0 && pendingAdmissions == 0) {
+        rotate();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Open the next room with waiters after the current one, or
+   * free the rooms if nobody waits.
+   */
+  private void rotate() {
+    for (int i = 1; i <= numberOfRooms; i++) {
+      int s = (current + i) % numberOfRooms;
+      if (waiting[s] > 0) {
+        current = s;
+        admitted[s] = tickets[s];
+        pendingAdmissions = waiting[s];
+        totalWaiting -= waiting[s];
+        waiting[s] = 0;
+        opened[s].signalAll();
+        return;
+      }
+    }
+    current = FREE;
+  }
+
+  /**
+   * Forget a waiter that gives up entering a room, so that it no longer
+   * holds the open room or counts as waiting.
+   * @param r Room number.
+   * @param ticket Ticket of the waiter.
+   */
+  private void withdraw(int r, long ticket) {
+    if (current == r && ticket < admitted[r]) {
+      // Admitted already, the room stays open until it entered
+      pendingAdmissions--;
+      if (occupants == 0 && pendingAdmissions == 0) {
+        rotate();
+      }
+    } else {
+      waiting[r]--;
+      totalWaiting--;
+    }
+  }
+
+  private void record(int r, long nanos) {
+    waitCount[r]++;
+    waitNanos[r] += nanos;
+    maxWaitNanos[r] = Math.max(maxWaitNanos[r], nanos);
+    waitBuckets[r][BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1)]++;
+  }
+
+  /**
+   * Get number of entries into a room.
+   * @param r Room number.
+   * @return Number of calls to <code>enter(r)</code> that returned.
+   */
+  public long waitCount(int r) {
+    lock.lock();
+    try {
+      return waitCount[r];
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get mean time spent entering a room.
+   * @param r Room number.
+   * @return Mean wait, in nanoseconds (<code>0</code> without entries).
+   */
+  public double meanWaitNanos(int r) {
+    lock.lock();
+    try {
+      return waitCount[r] == 0 ? 0 : (double) waitNanos[r] / waitCount[r];
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get maximum time spent entering a room.
+   * @param r Room number.
+   * @return Maximum wait, in nanoseconds.
+   */
+  public long maxWaitNanos(int r) {
+    lock.lock();
+    try {
+      return maxWaitNanos[r];
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get a percentile of the time spent entering a room.
+   *
+   * Waits are kept in power-of-two buckets, so the result is the upper
+   * bound of the bucket holding the percentile (at most twice the
+   * actual value).
+   *
+   * @param r Room number.
+   * @param p Percentile, between 0 and 100.
+   * @return Upper bound of the percentile, in nanoseconds.
+   */
+  public long waitPercentileNanos(int r, double p) {
+    lock.lock();
+    try {
+      long target = (long) Math.ceil(waitCount[r] * p / 100);
+      long seen = 0;
+      for (int b = 0; b < BUCKETS; b++) {
+        seen += waitBuckets[r][b];
+        if (seen >= target && seen > 0) {
+          return Math.min(maxWaitNanos[r], (1L << (b + 1)) - 1);
+        }
+      }
+      return 0;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Clear the wait-time statistics.
+   */
+  public void resetStatistics() {
+    lock.lock();
+    try {
+      for (int r = 0; r < numberOfRooms; r++) {
+        waitCount[r] = 0;
+        waitNanos[r] = 0;
+        maxWaitNanos[r] = 0;
+        Arrays.fill(waitBuckets[r], 0);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return current + "/" + occupants;
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends RoomsTest {
+    @Override
+    RoomSynchronizer createRooms(int numberOfRooms) {
+      return new FairRooms(numberOfRooms);
+    }
+  }
+}
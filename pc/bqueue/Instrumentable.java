@@ -0,0 +1,17 @@
+package pc.bqueue;
+
+/**
+ * Structure that can count internal events (retries, waits, resizes, ...).
+ *
+ * Counting is off until {@link #setCounters} is called. Counters should be
+ * set before the structure is shared with other threads, e.g. by wrapping
+ * it in an {@link InstrumentedBQueue} or {@link InstrumentedBDeque}.
+ */
+public interface Instrumentable {
+
+  /**
+   * Set the counters of internal events.
+   * @param counters Counters (or {@link Counters#DISABLED}).
+   */
+  void setCounters(Counters counters);
+}
@@ -0,0 +1,139 @@
+package pc.bqueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deque decorator counting operations.
+ *
+ * If the decorated deque is {@link Instrumentable}, its internal events
+ * are counted in the same {@link Counters}.
+ *
+ * @param <E> Type of elements.
+ */
+public final class InstrumentedBDeque<E> implements BDeque<E> {
+
+  private final BDeque<E> deque;
+  private final Counters counters;
+
+  /**
+   * Constructor.
+   * @param deque Deque to decorate (not shared with other threads yet).
+   */
+  public InstrumentedBDeque(BDeque<E> deque) {
+    this(deque, new Counters());
+  }
+
+  /**
+   * Constructor.
+   * @param deque Deque to decorate (not shared with other threads yet).
+   * @param counters Counters.
+   */
+  public InstrumentedBDeque(BDeque<E> deque, Counters counters) {
+    this.deque = deque;
+    this.counters = counters;
+    if (deque instanceof Instrumentable) {
+      ((Instrumentable) deque).setCounters(counters);
+    }
+  }
+
+  /**
+   * Get the counters.
+   * @return The counters (see {@link Counters#snapshot()}).
+   */
+  public Counters counters() {
+    return counters;
+  }
+
+  @Override
+  public int size() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.size();
+  }
+
+  @Override
+  public void addFirst(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    deque.addFirst(elem);
+  }
+
+  @Override
+  public E removeFirst() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.removeFirst();
+  }
+
+  @Override
+  public void addLast(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    deque.addLast(elem);
+  }
+
+  @Override
+  public E removeLast() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.removeLast();
+  }
+
+  @Override
+  public boolean offerFirst(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.offerFirst(elem);
+  }
+
+  @Override
+  public boolean offerFirst(E elem, long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.offerFirst(elem, timeout, unit);
+  }
+
+  @Override
+  public boolean offerLast(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.offerLast(elem);
+  }
+
+  @Override
+  public boolean offerLast(E elem, long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.offerLast(elem, timeout, unit);
+  }
+
+  @Override
+  public E pollFirst() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.pollFirst();
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.pollFirst(timeout, unit);
+  }
+
+  @Override
+  public E pollLast() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.pollLast();
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return deque.pollLast(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return deque.toString();
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends BDequeTest {
+    @Override
+    <T> BDeque<T> createBDeque(int capacity) {
+      return new InstrumentedBDeque<>(new LFDeque<>(capacity, false));
+    }
+  }
+}
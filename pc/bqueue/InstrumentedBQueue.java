@@ -0,0 +1,121 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue decorator counting operations.
+ *
+ * If the decorated queue is {@link Instrumentable}, its internal events
+ * are counted in the same {@link Counters}.
+ *
+ * @param <E> Type of elements.
+ */
+public final class InstrumentedBQueue<E> implements BQueue<E> {
+
+  private final BQueue<E> queue;
+  private final Counters counters;
+
+  /**
+   * Constructor.
+   * @param queue Queue to decorate (not shared with other threads yet).
+   */
+  public InstrumentedBQueue(BQueue<E> queue) {
+    this(queue, new Counters());
+  }
+
+  /**
+   * Constructor.
+   * @param queue Queue to decorate (not shared with other threads yet).
+   * @param counters Counters.
+   */
+  public InstrumentedBQueue(BQueue<E> queue, Counters counters) {
+    this.queue = queue;
+    this.counters = counters;
+    if (queue instanceof Instrumentable) {
+      ((Instrumentable) queue).setCounters(counters);
+    }
+  }
+
+  /**
+   * Get the counters.
+   * @return The counters (see {@link Counters#snapshot()}).
+   */
+  public Counters counters() {
+    return counters;
+  }
+
+  @Override
+  public int size() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.size();
+  }
+
+  @Override
+  public void add(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    queue.add(elem);
+  }
+
+  @Override
+  public E remove() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.remove();
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.offer(elem);
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.offer(elem, timeout, unit);
+  }
+
+  @Override
+  public E poll() {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.poll();
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.poll(timeout, unit);
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    counters.increment(Counters.Event.OPERATIONS);
+    queue.addAll(elems);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> dst, int max) {
+    counters.increment(Counters.Event.OPERATIONS);
+    return queue.drainTo(dst, max);
+  }
+
+  @Override
+  public int capacity() {
+    return queue.capacity();
+  }
+
+  @Override
+  public String toString() {
+    return queue.toString();
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int initialCapacity) {
+      return new InstrumentedBQueue<>(new LFBQueue<>(initialCapacity, false));
+    }
+  }
+}
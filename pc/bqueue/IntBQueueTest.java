@@ -0,0 +1,51 @@
+package pc.bqueue;
+
+/**
+ * Tests for queues of <code>int</code> elements.
+ */
+@SuppressWarnings("javadoc")
+public abstract class IntBQueueTest extends PrimitiveBQueueTest {
+
+  abstract IntBQueue createIntBQueue(int capacity);
+
+  @Override
+  Queue createQueue(int capacity) {
+    IntBQueue q = createIntBQueue(capacity);
+    return new Queue() {
+      @Override
+      public int size() {
+        return q.size();
+      }
+
+      @Override
+      public void add(long elem) {
+        q.addInt((int) elem);
+      }
+
+      @Override
+      public long remove() {
+        return q.removeInt();
+      }
+
+      @Override
+      public boolean offer(long elem) {
+        return q.offerInt((int) elem);
+      }
+
+      @Override
+      public long poll(long ifEmpty) {
+        return q.pollInt((int) ifEmpty);
+      }
+    };
+  }
+
+  @Override
+  long minValue() {
+    return Integer.MIN_VALUE;
+  }
+
+  @Override
+  long maxValue() {
+    return Integer.MAX_VALUE;
+  }
+}
@@ -0,0 +1,52 @@
+package pc.bqueue;
+
+import java.util.Arrays;
+
+/**
+ * Table of preallocated <code>Integer</code> objects for non-negative values.
+ *
+ * STM references hold objects, so every index stored in a
+ * <code>Ref.View&lt;Integer&gt;</code> is boxed, and values above 127 are
+ * allocated anew each time. Taking the boxes from this table instead
+ * makes storing an index allocation-free. The table grows on demand,
+ * e.g. when a structure resizes, and grown tables keep their contents.
+ */
+final class IntBoxes {
+
+  private volatile Integer[] table;
+
+  /**
+   * Constructor.
+   * @param n Number of values preallocated (<code>0</code> to <code>n - 1</code>).
+   */
+  IntBoxes(int n) {
+    table = fill(new Integer[0], n);
+  }
+
+  /**
+   * Get the box of a value.
+   * @param i Value (non-negative).
+   * @return The box of <code>i</code>, always the same object.
+   */
+  Integer of(int i) {
+    Integer[] t = table;
+    return i < t.length ? t[i] : grow(i);
+  }
+
+  private synchronized Integer grow(int i) {
+    Integer[] t = table;
+    if (i >= t.length) {
+      t = fill(t, Math.max(i + 1, 2 * t.length));
+      table = t;
+    }
+    return t[i];
+  }
+
+  private static Integer[] fill(Integer[] old, int n) {
+    Integer[] t = Arrays.copyOf(old, n);
+    for (int i = old.length; i < n; i++) {
+      t[i] = Integer.valueOf(i);
+    }
+    return t;
+  }
+}
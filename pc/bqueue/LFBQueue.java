@@ -1,7 +1,11 @@
 package pc.bqueue;
 
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import pc.util.PaddedAtomicInteger;
 
 
 /**
@@ -10,14 +14,21 @@ import java.util.Arrays;
  *
  * @param <E> Type of elements.
  */
-public class LFBQueue<E> implements BQueue<E> {
+public class LFBQueue<E> implements BQueue<E>, Instrumentable {
 
   protected static final int SIZE_ROOM = 0, ADD_ROOM = 1, REMOVE_ROOM = 2;
 
+  /**
+   * Marker returned by single removal attempts on an empty queue
+   * (<code>null</code> is a valid element).
+   */
+  protected static final Object EMPTY = new Object();
+
   private E[] array;
   private final AtomicInteger head, tail;
-  private final Rooms rooms;
-  private final boolean useBackoff;
+  private final RoomSynchronizer rooms;
+  private final WaitStrategy waitStrategy;
+  private Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
@@ -25,13 +36,63 @@ public class LFBQueue<E> implements BQueue<E> {
    * @param backoff Flag to enable/disable the use of back-off.
    * @throws IllegalArgumentException if {@code capacity <= 0}
    */
-  @SuppressWarnings("unchecked")
   public LFBQueue(int initialCapacity, boolean backoff) {
-    head = new AtomicInteger(0);
-    tail = new AtomicInteger(0);
+    this(initialCapacity, WaitStrategy.of(backoff), false);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @param padded Flag to keep <code>head</code>, <code>tail</code> and the
+   *               rooms state on separate cache lines.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueue(int initialCapacity, boolean backoff, boolean padded) {
+    this(initialCapacity, WaitStrategy.of(backoff), padded);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueue(int initialCapacity, WaitStrategy ws) {
+    this(initialCapacity, ws, false);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @param padded Flag to keep <code>head</code>, <code>tail</code> and the
+   *               rooms state on separate cache lines.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueue(int initialCapacity, WaitStrategy ws, boolean padded) {
+    this(initialCapacity, ws, padded, new Rooms(3, ws, padded));
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @param padded Flag to keep <code>head</code> and <code>tail</code>
+   *               on separate cache lines.
+   * @param rooms Room synchronizer (with 3 rooms) guarding the operations.
+   * @throws IllegalArgumentException if {@code capacity <= 0} or 
+   *         {@code rooms.count() != 3}
+   */
+  @SuppressWarnings("unchecked")
+  public LFBQueue(int initialCapacity, WaitStrategy ws, boolean padded, RoomSynchronizer rooms) {
+    if (rooms.count() != 3)
+      throw new IllegalArgumentException();
+    head = padded ? new PaddedAtomicInteger(0) : new AtomicInteger(0);
+    tail = padded ? new PaddedAtomicInteger(0) : new AtomicInteger(0);
     array = (E[]) new Object[initialCapacity];
-    useBackoff = backoff;
-    rooms = new Rooms(3, backoff);
+    waitStrategy = ws;
+    this.rooms = rooms;
   }
 
   @Override
@@ -55,62 +116,200 @@ public class LFBQueue<E> implements BQueue<E> {
   @Override
   public void add(E elem) {
 
-    while(true) {
-      rooms.enter(ADD_ROOM);
+    int attempt = 0;
+    while(!tryAdd(elem)) {
+      counters.increment(Counters.Event.RETRIES);
+      waitStrategy.idle(attempt++);
+    }
+  }
 
-      int p = tail.getAndIncrement();
-      if (p - head.get() < array.length) {
-        array[p % array.length] = elem;
-        break;
-      } else {
-        // "undo"
-        tail.getAndDecrement();
-        //We must leave the room to give chance to other threads
-        //Of emptying the array or we'll be stuck here forever
-        rooms.leave(ADD_ROOM);
-
-        if (useBackoff)
-          Backoff.delay();
-      }
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while((elem = tryRemove()) == EMPTY) {
+      counters.increment(Counters.Event.RETRIES);
+      waitStrategy.idle(attempt++);
+    }
+
+    return (E) elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return tryAdd(elem);
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (int attempt = 0; !tryAdd(elem); attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return false;
     }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  /**
+   * Single attempt at adding an element.
+   * @param elem Element to add.
+   * @return <code>false</code> if the queue was full.
+   */
+  private boolean tryAdd(E elem) {
+    rooms.enter(ADD_ROOM);
 
+    int p = tail.getAndIncrement();
+    boolean added = p - head.get() < array.length;
+    if (added) {
+      array[p % array.length] = elem;
+    } else {
+      // "undo"
+      tail.getAndDecrement();
+    }
+
+    //We must always leave the room to give chance to other threads
+    //Of emptying the array or we'll be stuck here forever
     rooms.leave(ADD_ROOM);
 
-    if (useBackoff)
-      Backoff.reset();
+    return added;
+  }
+
+  /**
+   * Single attempt at removing an element.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  private Object tryRemove() {
+    Object elem = EMPTY;
+
+    rooms.enter(REMOVE_ROOM);
+
+    int p = head.getAndIncrement();
+    if (p < tail.get()) {
+      int pos = p % array.length;
+      elem = array[pos];
+      array[pos] = null;
+    } else {
+      // "undo"
+      head.getAndDecrement();
+    }
+
+    //We must give the chance to other threads
+    //To fill the array or we'll be stuck here forever
+    rooms.leave(REMOVE_ROOM);
+
+    return elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    int i = 0;
+    int attempt = 0;
+
+    while (i < batch.length) {
+      rooms.enter(ADD_ROOM);
+
+      // Claim as many free slots as the batch needs with a single CAS.
+      // Head is stable inside ADD_ROOM, and an "undo" in progress from
+      // add() only makes the free space look smaller.
+      int k;
+      while (true) {
+        int t = tail.get();
+        k = Math.min(array.length - (t - head.get()), batch.length - i);
+        if (k <= 0) {
+          break;
+        }
+        if (tail.compareAndSet(t, t + k)) {
+          for (int j = 0; j < k; j++) {
+            array[(t + j) % array.length] = (E) batch[i + j];
+          }
+          i += k;
+          break;
+        }
+      }
+
+      //We must leave the room to give chance to other threads
+      //Of emptying the array when it is full
+      rooms.leave(ADD_ROOM);
+
+      if (k <= 0) {
+        counters.increment(Counters.Event.RETRIES);
+        waitStrategy.idle(attempt++);
+      }
+    }
   }
 
   @Override
-  public E remove() {
-    E elem = null;
-    while(true) {
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    int n = 0;
+    int attempt = 0;
+    while (true) {
       rooms.enter(REMOVE_ROOM);
 
-      int p = head.getAndIncrement();
-      if (p < tail.get()) {
-        int pos = p % array.length;
-        elem = array[pos];
-        array[pos] = null;
-        break;
-      } else {
-        // "undo"
-        head.getAndDecrement();
+      // Tail is stable inside REMOVE_ROOM, so the available elements
+      // can be claimed at once.
+      while (true) {
+        int h = head.get();
+        int k = Math.min(tail.get() - h, max);
+        if (k <= 0) {
+          break;
+        }
+        if (head.compareAndSet(h, h + k)) {
+          for (int j = 0; j < k; j++) {
+            int pos = (h + j) % array.length;
+            dst.add(array[pos]);
+            array[pos] = null;
+          }
+          n = k;
+          break;
+        }
+      }
 
-        //We must give the chance to other threads
-        //To fill the array or we'll be stuck here forever
-        rooms.leave(REMOVE_ROOM);
+      rooms.leave(REMOVE_ROOM);
 
-        if (useBackoff)
-          Backoff.delay();
+      if (n > 0) {
+        break;
       }
-    }
 
-    rooms.leave(REMOVE_ROOM);
+      counters.increment(Counters.Event.RETRIES);
 
-    if (useBackoff)
-      Backoff.reset();
+      waitStrategy.idle(attempt++);
+    }
 
-    return elem;
+    return n;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+    if (rooms instanceof Instrumentable) {
+      ((Instrumentable) rooms).setCounters(counters);
+    }
   }
 
   @Override
@@ -2,8 +2,12 @@ package pc.bqueue;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicMarkableReference;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import pc.util.PaddedAtomicBoolean;
+import pc.util.PaddedAtomicInteger;
 
 /**
  * Lock-free implementation of queue - unbounded variant.
@@ -11,16 +15,23 @@ import java.util.Arrays;
  *
  * @param <E> Type of elements.
  */
-public class LFBQueueU<E>  implements BQueue<E> {
+public class LFBQueueU<E>  implements BQueue<E>, Instrumentable {
 
   protected static final int SIZE_ROOM = 0, ADD_ROOM = 1, REMOVE_ROOM = 2;
 
+  /**
+   * Marker returned by single removal attempts on an empty queue
+   * (<code>null</code> is a valid element).
+   */
+  protected static final Object EMPTY = new Object();
+
   protected E[] array;
   protected final AtomicInteger head;
   protected final AtomicInteger tail;
   protected final AtomicBoolean addElementFlag;
-  protected final Rooms rooms;
-  protected final boolean useBackoff;
+  protected final RoomSynchronizer rooms;
+  protected final WaitStrategy waitStrategy;
+  protected Counters counters = Counters.DISABLED;
 
 
   /**
@@ -29,14 +40,66 @@ public class LFBQueueU<E>  implements BQueue<E> {
    * @param backoff Flag to enable/disable the use of back-off.
    * @throws IllegalArgumentException if {@code capacity <= 0}
    */
-  @SuppressWarnings("unchecked")
   public LFBQueueU(int initialCapacity, boolean backoff) {
-    head = new AtomicInteger(0);
-    tail = new AtomicInteger(0);new AtomicMarkableReference<>(0, false);
-    addElementFlag = new AtomicBoolean();
+    this(initialCapacity, WaitStrategy.of(backoff), false);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @param padded Flag to keep <code>head</code>, <code>tail</code>, 
+   *               <code>addElementFlag</code> and the rooms state on
+   *               separate cache lines.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueueU(int initialCapacity, boolean backoff, boolean padded) {
+    this(initialCapacity, WaitStrategy.of(backoff), padded);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueueU(int initialCapacity, WaitStrategy ws) {
+    this(initialCapacity, ws, false);
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @param padded Flag to keep <code>head</code>, <code>tail</code>, 
+   *               <code>addElementFlag</code> and the rooms state on
+   *               separate cache lines.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFBQueueU(int initialCapacity, WaitStrategy ws, boolean padded) {
+    this(initialCapacity, ws, padded, new Rooms(3, ws, padded));
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @param padded Flag to keep <code>head</code>, <code>tail</code> and 
+   *               <code>addElementFlag</code> on separate cache lines.
+   * @param rooms Room synchronizer (with 3 rooms) guarding the operations.
+   * @throws IllegalArgumentException if {@code capacity <= 0} or 
+   *         {@code rooms.count() != 3}
+   */
+  @SuppressWarnings("unchecked")
+  public LFBQueueU(int initialCapacity, WaitStrategy ws, boolean padded, RoomSynchronizer rooms) {
+    if (rooms.count() != 3)
+      throw new IllegalArgumentException();
+    head = padded ? new PaddedAtomicInteger(0) : new AtomicInteger(0);
+    tail = padded ? new PaddedAtomicInteger(0) : new AtomicInteger(0);
+    addElementFlag = padded ? new PaddedAtomicBoolean(false) : new AtomicBoolean();
     array = (E[]) new Object[initialCapacity];
-    useBackoff = backoff;
-    rooms = new Rooms(3, backoff);
+    waitStrategy = ws;
+    this.rooms = rooms;
   }
 
   @Override
@@ -56,6 +119,7 @@ public class LFBQueueU<E>  implements BQueue<E> {
   @Override
   public void add(E elem) {
 
+        int attempt = 0;
         while(true) {
           //Try to aquire the lock with and atomic compare and set
           if (addElementFlag.compareAndSet(false, true)) {
@@ -77,6 +141,8 @@ public class LFBQueueU<E>  implements BQueue<E> {
               }
 
               newArray[p % newArray.length] = elem;
+              counters.increment(Counters.Event.RESIZES);
+              counters.add(Counters.Event.RESIZE_COPIES, p - head.get());
 
               //System.out.println(Arrays.toString(this.array) + " " + elem + ". Stats: " + head.get() + " " + tail.get() + " " + newArray.length);
 
@@ -91,49 +157,180 @@ public class LFBQueueU<E>  implements BQueue<E> {
               break;
             }
         } else {
-          if (useBackoff)
-            Backoff.delay();
+          counters.increment(Counters.Event.RETRIES);
+          waitStrategy.idle(attempt++);
         }
       }
+      waitStrategy.done(attempt);
+  }
 
-      if (useBackoff)
-          Backoff.reset();
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while((elem = tryRemove()) == EMPTY) {
+      counters.increment(Counters.Event.RETRIES);
+      waitStrategy.idle(attempt++);
+    }
 
+    return (E) elem;
   }
 
   @Override
-  public E remove() {
-    E elem = null;
-    while(true) {
-      rooms.enter(REMOVE_ROOM);
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
 
-      int p = head.getAndIncrement();
-      if (p < tail.get()) {
-        int pos = p % array.length;
-        elem = array[pos];
-        array[pos] = null;
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
 
-        rooms.leave(REMOVE_ROOM);
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
 
-        break;
-      } else {
-        // "undo"
-        head.getAndDecrement();
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  /**
+   * Single attempt at removing an element from the head.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  protected Object tryRemove() {
+    Object elem = EMPTY;
+
+    rooms.enter(REMOVE_ROOM);
+
+    int p = head.getAndIncrement();
+    if (p < tail.get()) {
+      int pos = p % array.length;
+      elem = array[pos];
+      array[pos] = null;
+    } else {
+      // "undo"
+      head.getAndDecrement();
+    }
+
+    //We must give the chance to other threads
+    //To fill the array or we'll be stuck here forever
+    rooms.leave(REMOVE_ROOM);
+
+    return elem;
+  }
 
-        //We must give the chance to other threads
-        //To fill the array or we'll be stuck here forever
-        rooms.leave(REMOVE_ROOM);
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    if (batch.length == 0) {
+      return;
+    }
+
+    int attempt = 0;
+    while (!addElementFlag.compareAndSet(false, true)) {
+      counters.increment(Counters.Event.RETRIES);
+      waitStrategy.idle(attempt++);
+    }
+    waitStrategy.done(attempt);
+
+    rooms.enter(ADD_ROOM);
 
-        if (useBackoff)
-          Backoff.delay();
+    int h = head.get();
+    int t = tail.get();
+    int required = t - h + batch.length;
+
+    if (required > array.length) {
+      // Resize once for the whole batch
+      int newLength = array.length * 2;
+      while (newLength < required) {
+        newLength *= 2;
+      }
+
+      E[] newArray = (E[]) new Object[newLength];
+
+      for (int i = h; i < t; i++) {
+        newArray[i % newArray.length] = this.array[i % this.array.length];
       }
+
+      this.array = newArray;
+      counters.increment(Counters.Event.RESIZES);
+      counters.add(Counters.Event.RESIZE_COPIES, t - h);
     }
 
+    for (int j = 0; j < batch.length; j++) {
+      array[(t + j) % array.length] = (E) batch[j];
+    }
 
-    if (useBackoff)
-      Backoff.reset();
+    tail.getAndAdd(batch.length);
 
-    return elem;
+    rooms.leave(ADD_ROOM);
+    addElementFlag.set(false);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    int n = 0;
+    int attempt = 0;
+    while (true) {
+      rooms.enter(REMOVE_ROOM);
+
+      // Claim elements one at a time with the same increment / undo
+      // protocol as remove(): LFDeque.removeLast shares REMOVE_ROOM and
+      // moves the tail, so the tail is not stable enough for a bulk claim.
+      while (n < max) {
+        int p = head.getAndIncrement();
+        if (p < tail.get()) {
+          int pos = p % array.length;
+          dst.add(array[pos]);
+          array[pos] = null;
+          n++;
+        } else {
+          // "undo"
+          head.getAndDecrement();
+          break;
+        }
+      }
+
+      rooms.leave(REMOVE_ROOM);
+
+      if (n > 0) {
+        break;
+      }
+
+      counters.increment(Counters.Event.RETRIES);
+
+      waitStrategy.idle(attempt++);
+    }
+
+    return n;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+    if (rooms instanceof Instrumentable) {
+      ((Instrumentable) rooms).setCounters(counters);
+    }
   }
 
   @Override
@@ -5,6 +5,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicMarkableReference;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class LFDeque<E> extends LFBQueueU<E> implements BDeque<E> {
 
@@ -12,9 +13,26 @@ public class LFDeque<E> extends LFBQueueU<E> implements BDeque<E> {
     super(initialCapacity, useBackoff);
   }
 
+  public LFDeque(int initialCapacity, boolean useBackoff, boolean padded) {
+    super(initialCapacity, useBackoff, padded);
+  }
+
+  public LFDeque(int initialCapacity, WaitStrategy ws) {
+    super(initialCapacity, ws);
+  }
+
+  public LFDeque(int initialCapacity, WaitStrategy ws, boolean padded) {
+    super(initialCapacity, ws, padded);
+  }
+
+  public LFDeque(int initialCapacity, WaitStrategy ws, boolean padded, RoomSynchronizer rooms) {
+    super(initialCapacity, ws, padded, rooms);
+  }
+
   @Override
   public void addFirst(E elem) {
 
+    int attempt = 0;
     while (true) {
 
       if (addElementFlag.compareAndSet(false, true)) {
@@ -57,6 +75,8 @@ public class LFDeque<E> extends LFBQueueU<E> implements BDeque<E> {
           }
 
           newArray[p % newArray.length] = elem;
+          counters.increment(Counters.Event.RESIZES);
+          counters.add(Counters.Event.RESIZE_COPIES, tail.get() - p);
 
           //System.out.println("New array :" + Arrays.toString(newArray));
 
@@ -68,15 +88,12 @@ public class LFDeque<E> extends LFBQueueU<E> implements BDeque<E> {
         }
 
       } else {
-        if (useBackoff)
-          Backoff.delay();
+        counters.increment(Counters.Event.RETRIES);
+        waitStrategy.idle(attempt++);
       }
 
     }
-
-    if (useBackoff)
-      Backoff.reset();
-
+    waitStrategy.done(attempt);
   }
 
   @Override
@@ -90,38 +107,74 @@ public class LFDeque<E> extends LFBQueueU<E> implements BDeque<E> {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public E removeLast() {
 
-    E elem = null;
+    Object elem;
+    int attempt = 0;
 
-    while (true) {
-      rooms.enter(REMOVE_ROOM);
+    while ((elem = tryRemoveLast()) == EMPTY) {
+      counters.increment(Counters.Event.RETRIES);
+      waitStrategy.idle(attempt++);
+    }
 
-      int p = tail.decrementAndGet();
-      //System.out.println("Removing last: " + p + ". " + array.length + " " + Arrays.toString(array));
+    return (E) elem;
+  }
 
-      if (p >= head.get()) {
+  @Override
+  public E pollFirst() {
+    return poll();
+  }
 
-        int pos = p % array.length;
-        elem = array[pos];
-        array[pos] = null;
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    return poll(timeout, unit);
+  }
 
-        rooms.leave(REMOVE_ROOM);
-        break;
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollLast() {
+    Object elem = tryRemoveLast();
+    return elem == EMPTY ? null : (E) elem;
+  }
 
-      } else {
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollLast(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemoveLast()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
 
-        tail.getAndIncrement();
+  /**
+   * Single attempt at removing an element from the tail.
+   * @return The element removed, or <code>EMPTY</code> if the deque was empty.
+   */
+  private Object tryRemoveLast() {
+    Object elem = EMPTY;
 
-        rooms.leave(REMOVE_ROOM);
+    rooms.enter(REMOVE_ROOM);
+
+    int p = tail.decrementAndGet();
+    //System.out.println("Removing last: " + p + ". " + array.length + " " + Arrays.toString(array));
+
+    if (p >= head.get()) {
+
+      int pos = p % array.length;
+      elem = array[pos];
+      array[pos] = null;
+
+    } else {
+
+      tail.getAndIncrement();
 
-        if (useBackoff)
-            Backoff.delay();
-      }
     }
 
-    if (useBackoff)
-      Backoff.reset();
+    rooms.leave(REMOVE_ROOM);
 
     return elem;
   }
@@ -0,0 +1,115 @@
+package pc.bqueue;
+
+/**
+ * Lock-free implementation of queue of <code>long</code> elements.
+ * 
+ * Same sequence-numbered ring as {@link LFRingBQueue}, with the elements
+ * kept in an <code>long[]</code> and the positions in a {@link RingSequence}.
+ * No operation allocates: there is no boxing and, unlike {@link LFBQueue},
+ * no <code>Rooms</code> state.
+ */
+public class LFLongBQueue implements LongBQueue {
+
+  private final long[] array;
+  private final RingSequence ring;
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFLongBQueue(int capacity, boolean backoff) {
+    this(capacity, WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFLongBQueue(int capacity, WaitStrategy ws) {
+    ring = new RingSequence(capacity);
+    array = new long[capacity];
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int capacity() {
+    return ring.capacity();
+  }
+
+  @Override
+  public int size() {
+    return ring.size();
+  }
+
+  @Override
+  public void addLong(long elem) {
+    long pos;
+    int attempt = 0;
+    while ((pos = ring.claimTail()) < 0) {
+      waitStrategy.idle(attempt++);
+    }
+    put(pos, elem);
+  }
+
+  @Override
+  public long removeLong() {
+    long pos;
+    int attempt = 0;
+    while ((pos = ring.claimHead()) < 0) {
+      waitStrategy.idle(attempt++);
+    }
+    return take(pos);
+  }
+
+  @Override
+  public boolean offerLong(long elem) {
+    long pos = ring.claimTail();
+    if (pos < 0) {
+      return false;
+    }
+    put(pos, elem);
+    return true;
+  }
+
+  @Override
+  public long pollLong(long ifEmpty) {
+    long pos = ring.claimHead();
+    return pos < 0 ? ifEmpty : take(pos);
+  }
+
+  /**
+   * Store an element at a position claimed by a producer.
+   * @param pos Position.
+   * @param elem Element to store.
+   */
+  private void put(long pos, long elem) {
+    array[ring.slot(pos)] = elem;
+    ring.filled(pos);
+  }
+
+  /**
+   * Get the element at a position claimed by a consumer.
+   * @param pos Position.
+   * @return The element.
+   */
+  private long take(long pos) {
+    long elem = array[ring.slot(pos)];
+    ring.freed(pos);
+    return elem;
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends LongBQueueTest {
+    @Override
+    LongBQueue createLongBQueue(int capacity) {
+      return new LFLongBQueue(capacity, false);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free implementation of queue - bounded ring buffer with 
+ * per-slot sequence numbers (after Vyukov's bounded MPMC queue).
+ *
+ * Unlike {@link LFBQueue} there are no rooms: producers only compete
+ * with each other on <code>tail</code>, consumers only on <code>head</code>,
+ * and both sides work on different slots concurrently. Each slot carries 
+ * a sequence number telling which position it is ready for:
+ * <code>2 * pos</code> when it is free for the producer of position 
+ * <code>pos</code>, and <code>2 * pos + 1</code> once that producer has
+ * stored its element. (Doubling the positions keeps both states distinct
+ * even for a capacity of one.)
+ *
+ * @param <E> Type of elements.
+ */
+public class LFRingBQueue<E> implements BQueue<E> {
+
+  /**
+   * Marker returned by single removal attempts on an empty queue
+   * (<code>null</code> is a valid element).
+   */
+  private static final Object EMPTY = new Object();
+
+  private final E[] array;
+  private final AtomicLongArray sequence;
+  private final AtomicLong head, tail;
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public LFRingBQueue(int capacity, boolean backoff) {
+    this(capacity, WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param ws Wait strategy for failed attempts.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  @SuppressWarnings("unchecked")
+  public LFRingBQueue(int capacity, WaitStrategy ws) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    array = (E[]) new Object[capacity];
+    sequence = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequence.set(i, 2L * i);
+    }
+    head = new AtomicLong(0);
+    tail = new AtomicLong(0);
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int capacity() {
+    return array.length;
+  }
+
+  @Override
+  public int size() {
+    // Read head first: head <= tail always holds, so the result is not negative.
+    long h = head.get();
+    long t = tail.get();
+    return (int) Math.min(t - h, array.length);
+  }
+
+  @Override
+  public void add(E elem) {
+    int attempt = 0;
+    while (!tryAdd(elem)) {
+      waitStrategy.idle(attempt++);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = tryRemove()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+
+    return (E) elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return tryAdd(elem);
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (int attempt = 0; !tryAdd(elem); attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    // Slots are claimed one by one: there is no room or lock 
+    // whose cost a batch could amortize.
+    for (E elem : elems) {
+      add(elem);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    dst.add(remove());
+    int n = 1;
+    Object elem;
+    while (n < max && (elem = tryRemove()) != EMPTY) {
+      dst.add((E) elem);
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Single attempt at adding an element.
+   * @param elem Element to add.
+   * @return <code>false</code> if the queue was full.
+   */
+  private boolean tryAdd(E elem) {
+    long pos = tail.get();
+    while (true) {
+      int slot = (int) (pos % array.length);
+      long diff = sequence.get(slot) - 2 * pos;
+      if (diff == 0) {
+        // slot is free for this position, try to claim it
+        if (tail.compareAndSet(pos, pos + 1)) {
+          array[slot] = elem;
+          sequence.set(slot, 2 * pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        // slot still holds the element from the previous lap: full
+        return false;
+      } else {
+        // another producer claimed this position first
+        pos = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Single attempt at removing an element.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  private Object tryRemove() {
+    long pos = head.get();
+    while (true) {
+      int slot = (int) (pos % array.length);
+      long diff = sequence.get(slot) - (2 * pos + 1);
+      if (diff == 0) {
+        // slot holds the element for this position, try to claim it
+        if (head.compareAndSet(pos, pos + 1)) {
+          E elem = array[slot];
+          array[slot] = null;
+          // free the slot for the producer of the next lap
+          sequence.set(slot, 2 * (pos + array.length));
+          return elem;
+        }
+        pos = head.get();
+      } else if (diff < 0) {
+        // element for this position not stored yet: empty
+        return EMPTY;
+      } else {
+        // another consumer claimed this position first
+        pos = head.get();
+      }
+    }
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new LFRingBQueue<>(capacity, false);
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free implementation of queue - unbounded variant built from
+ * linked fixed-size segments (after the FAA array queue of Ramalhete
+ * and Correia).
+ *
+ * Producers claim slots of the tail segment with fetch-and-add and
+ * consumers do the same on the head segment, so neither side serializes
+ * on a flag or room. When the tail segment runs out of slots a new one
+ * is linked with a single CAS, so growth costs one segment allocation
+ * instead of copying the queue. Consumed segments are left for the
+ * garbage collector.
+ *
+ * A consumer that claims a slot before its producer has filled it marks
+ * the slot as <code>TAKEN</code>, and the producer then retries on a
+ * later slot.
+ *
+ * @param <E> Type of elements.
+ */
+public class LFSegmentedBQueue<E> implements BQueue<E> {
+
+  /**
+   * Default number of slots per segment.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+  /**
+   * Marker returned by single removal attempts on an empty queue.
+   */
+  private static final Object EMPTY = new Object();
+
+  /**
+   * Marker left in slots that were consumed (or given up by a consumer).
+   */
+  private static final Object TAKEN = new Object();
+
+  /**
+   * Marker stored in place of <code>null</code> elements (a
+   * <code>null</code> slot means "not filled yet").
+   */
+  private static final Object NULL = new Object();
+
+  private static final class Segment {
+    final AtomicReferenceArray<Object> items;
+    final AtomicInteger enqIdx, deqIdx;
+    final AtomicReference<Segment> next = new AtomicReference<>();
+
+    Segment(int size) {
+      items = new AtomicReferenceArray<>(size);
+      enqIdx = new AtomicInteger(0);
+      deqIdx = new AtomicInteger(0);
+    }
+
+    Segment(int size, Object first) {
+      items = new AtomicReferenceArray<>(size);
+      items.lazySet(0, first);
+      enqIdx = new AtomicInteger(1);
+      deqIdx = new AtomicInteger(0);
+    }
+  }
+
+  private final int segmentSize;
+  private final AtomicReference<Segment> head, tail;
+  private final LongAdder added, removed;
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Constructor.
+   * @param segmentSize Number of slots per segment.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @throws IllegalArgumentException if {@code segmentSize <= 0}
+   */
+  public LFSegmentedBQueue(int segmentSize, boolean backoff) {
+    this(segmentSize, WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param segmentSize Number of slots per segment.
+   * @param ws Wait strategy for removals on an empty queue.
+   * @throws IllegalArgumentException if {@code segmentSize <= 0}
+   */
+  public LFSegmentedBQueue(int segmentSize, WaitStrategy ws) {
+    if (segmentSize <= 0)
+      throw new IllegalArgumentException();
+    this.segmentSize = segmentSize;
+    Segment s = new Segment(segmentSize);
+    head = new AtomicReference<>(s);
+    tail = new AtomicReference<>(s);
+    added = new LongAdder();
+    removed = new LongAdder();
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int capacity() {
+    return UNBOUNDED;
+  }
+
+  @Override
+  public int size() {
+    // Read removals first, so that the result is not negative
+    // unless the counters are updated concurrently.
+    long r = removed.sum();
+    long a = added.sum();
+    return (int) Math.max(0, a - r);
+  }
+
+  @Override
+  public void add(E elem) {
+    Object item = elem == null ? NULL : elem;
+    while (true) {
+      Segment t = tail.get();
+      int i = t.enqIdx.getAndIncrement();
+      if (i >= segmentSize) {
+        if (t != tail.get()) {
+          continue;
+        }
+        Segment next = t.next.get();
+        if (next == null) {
+          Segment s = new Segment(segmentSize, item);
+          if (t.next.compareAndSet(null, s)) {
+            tail.compareAndSet(t, s);
+            break;
+          }
+        } else {
+          // help a producer that linked a segment but did not move tail yet
+          tail.compareAndSet(t, next);
+        }
+      } else if (t.items.compareAndSet(i, null, item)) {
+        break;
+      }
+      // else: a consumer gave up on this slot, try the next one
+    }
+    added.increment();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = tryRemove()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    // Producers already work in parallel, so a batch is just a
+    // sequence of adds (keeping the batch order).
+    for (E elem : elems) {
+      add(elem);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    dst.add(remove());
+    int n = 1;
+    Object elem;
+    while (n < max && (elem = tryRemove()) != EMPTY) {
+      dst.add((E) elem);
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Single attempt at removing an element.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  private Object tryRemove() {
+    while (true) {
+      Segment h = head.get();
+      if (h.deqIdx.get() >= h.enqIdx.get() && h.next.get() == null) {
+        return EMPTY;
+      }
+      int i = h.deqIdx.getAndIncrement();
+      if (i >= segmentSize) {
+        Segment next = h.next.get();
+        if (next == null) {
+          return EMPTY;
+        }
+        head.compareAndSet(h, next);
+        continue;
+      }
+      Object item = h.items.getAndSet(i, TAKEN);
+      if (item == null) {
+        // producer of this slot has not stored its element yet;
+        // it will see TAKEN and use another slot
+        continue;
+      }
+      removed.increment();
+      return item == NULL ? null : item;
+    }
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new LFSegmentedBQueue<>(capacity, false);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package pc.bqueue;
+
+/**
+ * Blocking queue interface specialized for <code>long</code> elements.
+ * 
+ * Same contract as {@link BQueue} for the operations it has (blocking
+ * add and remove, non-blocking offer and poll), but elements are stored
+ * and passed around unboxed, so adding or removing an element does not
+ * allocate.
+ */
+public interface LongBQueue {
+
+  /**
+   * Get the size of the queue.
+   * @return The number of elements in the queue.
+   */
+  int size();
+  
+  /**
+   * Add an element to the queue.
+   * 
+   * The operation MAY block the calling thread if the queue 
+   * has bounded capacity.
+   * @param elem Element to add.
+   */
+  void addLong(long elem);
+  
+  /**
+   * Remove an element from the queue.
+   * 
+   * The operation MUST block the calling thread while the queue 
+   * is empty before returning.
+   * 
+   * @return Element removed from the queue.
+   */
+  long removeLong();
+
+  /**
+   * Add an element to the queue if there is space for it, without blocking.
+   * 
+   * @param elem Element to add.
+   * @return <code>true</code> if the element was added, <code>false</code>
+   *         if the queue was full.
+   */
+  boolean offerLong(long elem);
+
+  /**
+   * Remove an element from the queue if one is available, without blocking.
+   * 
+   * There is no <code>null</code> to signal an empty queue, so the
+   * caller supplies the value returned in that case, typically one
+   * that is never added.
+   * 
+   * @param ifEmpty Value to return if the queue is empty.
+   * @return Element removed from the queue, or <code>ifEmpty</code> if
+   *         the queue was empty.
+   */
+  long pollLong(long ifEmpty);
+  
+  /**
+   * Get queue capacity.
+   * @return The  fixed queue capacity, or <code>BQueue.UNBOUNDED</code> is queue
+   *         capacity is not bounded.
+   */
+  int capacity();
+  
+  /**
+   * Indicate if queue has bounded capacity.
+   * @return <code>capacity() != BQueue.UNBOUNDED</code>.
+   */
+  default boolean hasFixedCapacity() {
+    return capacity() != BQueue.UNBOUNDED;
+  }
+  
+}
@@ -0,0 +1,51 @@
+package pc.bqueue;
+
+/**
+ * Tests for queues of <code>long</code> elements.
+ */
+@SuppressWarnings("javadoc")
+public abstract class LongBQueueTest extends PrimitiveBQueueTest {
+
+  abstract LongBQueue createLongBQueue(int capacity);
+
+  @Override
+  Queue createQueue(int capacity) {
+    LongBQueue q = createLongBQueue(capacity);
+    return new Queue() {
+      @Override
+      public int size() {
+        return q.size();
+      }
+
+      @Override
+      public void add(long elem) {
+        q.addLong(elem);
+      }
+
+      @Override
+      public long remove() {
+        return q.removeLong();
+      }
+
+      @Override
+      public boolean offer(long elem) {
+        return q.offerLong(elem);
+      }
+
+      @Override
+      public long poll(long ifEmpty) {
+        return q.pollLong(ifEmpty);
+      }
+    };
+  }
+
+  @Override
+  long minValue() {
+    return Long.MIN_VALUE;
+  }
+
+  @Override
+  long maxValue() {
+    return Long.MAX_VALUE;
+  }
+}
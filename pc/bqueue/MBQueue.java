@@ -1,5 +1,8 @@
 package pc.bqueue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 import pc.util.UnexpectedException;
 
 /**
@@ -8,10 +11,11 @@ import pc.util.UnexpectedException;
  *
  * @param <E> Type of elements.
  */
-public class MBQueue<E> implements BQueue<E> {
+public class MBQueue<E> implements BQueue<E>, Instrumentable {
 
   protected E[] array;
   protected int head, size;
+  protected Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
@@ -41,6 +45,7 @@ public class MBQueue<E> implements BQueue<E> {
       while (size == array.length) {
         // queue is full
         try {
+          counters.increment(Counters.Event.WAITS);
           wait();
         }
         catch (InterruptedException e) {
@@ -58,6 +63,7 @@ public class MBQueue<E> implements BQueue<E> {
       while (size == 0) {
         // queue is empty
         try {
+          counters.increment(Counters.Event.WAITS);
           wait();
         }
         catch (InterruptedException e) {
@@ -75,6 +81,126 @@ public class MBQueue<E> implements BQueue<E> {
       return elem;
   }
 
+  @Override
+  public synchronized boolean offer(E elem) {
+    if (size == array.length) {
+      return false;
+    }
+    array[(head + size) % array.length] = elem;
+    size++;
+    notifyAll();
+    return true;
+  }
+
+  @Override
+  public synchronized boolean offer(E elem, long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (size == array.length) {
+      // queue is full
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      try {
+        counters.increment(Counters.Event.WAITS);
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    return offer(elem);
+  }
+
+  @Override
+  public synchronized E poll() {
+    if (size == 0) {
+      return null;
+    }
+    return remove();
+  }
+
+  @Override
+  public synchronized E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (size == 0) {
+      // queue is empty
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      try {
+        counters.increment(Counters.Event.WAITS);
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    return remove();
+  }
+
+  @Override
+  public synchronized void addAll(Collection<? extends E> elems) {
+    boolean added = false;
+    for (E elem : elems) {
+      while (size == array.length) {
+        // queue is full, wake up consumers for what was added so far
+        if (added) {
+          notifyAll();
+          added = false;
+        }
+        try {
+          counters.increment(Counters.Event.WAITS);
+          wait();
+        }
+        catch (InterruptedException e) {
+          throw new UnexpectedException(e);
+        }
+      }
+      array[(head + size) % array.length] = elem;
+      size++;
+      added = true;
+    }
+    if (added) {
+      notifyAll();
+    }
+  }
+
+  @Override
+  public synchronized int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException();
+    }
+    while (size == 0) {
+      // queue is empty
+      try {
+        counters.increment(Counters.Event.WAITS);
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+
+    int n = Math.min(size, max);
+    for (int i = 0; i < n; i++) {
+      dst.add(array[head]);
+      array[head] = null;
+      head = (head + 1) % array.length;
+    }
+
+    size -= n;
+    notifyAll();
+
+    return n;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
   /**
    * Test instantiation.
    */
@@ -1,6 +1,7 @@
 package pc.bqueue;
 
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Monitor-based implementation of queue.
@@ -26,25 +27,68 @@ public class MBQueueU<E> extends MBQueue<E> {
 
   @Override
   public synchronized void add(E elem) {
-      if (size == array.length) {
+      ensureCapacity(size + 1);
 
-          E[] newArray = (E[]) new Object[array.length * 2];
+      array[(head + size) % array.length] = elem;
+      size++;
+      notifyAll();
+  }
 
-          int head = this.head;
+  @Override
+  public boolean offer(E elem) {
+      // The queue never fills up, so there is never a reason to wait
+      add(elem);
+      return true;
+  }
 
-          for (int i = 0; i < size; head = (head + 1) % array.length) {
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+      return offer(elem);
+  }
 
-              newArray[i++] = array[head];
+  @Override
+  public synchronized void addAll(Collection<? extends E> elems) {
+      // Grow once for the whole batch rather than once per doubling.
+      ensureCapacity(size + elems.size());
 
-          }
+      for (E elem : elems) {
+          ensureCapacity(size + 1);
+          array[(head + size) % array.length] = elem;
+          size++;
+      }
+      notifyAll();
+  }
 
-          this.head = 0;
-          array = newArray;
+  /**
+   * Grow the backing array (by doubling) until it holds at least
+   * <code>required</code> elements. Must be called while holding the monitor.
+   * @param required Required capacity.
+   */
+  @SuppressWarnings("unchecked")
+  private void ensureCapacity(int required) {
+      if (required <= array.length) {
+          return;
       }
 
-      array[(head + size) % array.length] = elem;
-      size++;
-      notifyAll();
+      int newLength = array.length * 2;
+      while (newLength < required) {
+          newLength *= 2;
+      }
+
+      E[] newArray = (E[]) new Object[newLength];
+
+      int head = this.head;
+
+      for (int i = 0; i < size; head = (head + 1) % array.length) {
+
+          newArray[i++] = array[head];
+
+      }
+
+      this.head = 0;
+      array = newArray;
+      counters.increment(Counters.Event.RESIZES);
+      counters.add(Counters.Event.RESIZE_COPIES, size);
   }
 
   /**
@@ -0,0 +1,104 @@
+package pc.bqueue;
+
+import pc.util.UnexpectedException;
+
+/**
+ * Monitor-based implementation of queue of <code>int</code> elements.
+ * 
+ * Same design as {@link MBQueue}, with the elements kept in an 
+ * <code>int[]</code> ring.
+ */
+public class MIntBQueue implements IntBQueue {
+
+  private final int[] array;
+  private int head, size;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public MIntBQueue(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    head = 0;
+    size = 0;
+    array = new int[capacity];
+  }
+
+  @Override
+  public int capacity() {
+    return array.length;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized void addInt(int elem) {
+    while (size == array.length) {
+      // queue is full
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    array[(head + size) % array.length] = elem;
+    size++;
+    notifyAll();
+  }
+
+  @Override
+  public synchronized int removeInt() {
+    while (size == 0) {
+      // queue is empty
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+
+    int elem = array[head];
+    head = (head + 1) % array.length;
+
+    size--;
+    notifyAll();
+
+    return elem;
+  }
+
+  @Override
+  public synchronized boolean offerInt(int elem) {
+    if (size == array.length) {
+      return false;
+    }
+    array[(head + size) % array.length] = elem;
+    size++;
+    notifyAll();
+    return true;
+  }
+
+  @Override
+  public synchronized int pollInt(int ifEmpty) {
+    if (size == 0) {
+      return ifEmpty;
+    }
+    return removeInt();
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends IntBQueueTest {
+    @Override
+    IntBQueue createIntBQueue(int capacity) {
+      return new MIntBQueue(capacity);
+    }
+  }
+}
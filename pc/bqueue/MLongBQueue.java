@@ -0,0 +1,104 @@
+package pc.bqueue;
+
+import pc.util.UnexpectedException;
+
+/**
+ * Monitor-based implementation of queue of <code>long</code> elements.
+ * 
+ * Same design as {@link MBQueue}, with the elements kept in an 
+ * <code>long[]</code> ring.
+ */
+public class MLongBQueue implements LongBQueue {
+
+  private final long[] array;
+  private int head, size;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public MLongBQueue(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    head = 0;
+    size = 0;
+    array = new long[capacity];
+  }
+
+  @Override
+  public int capacity() {
+    return array.length;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized void addLong(long elem) {
+    while (size == array.length) {
+      // queue is full
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    array[(head + size) % array.length] = elem;
+    size++;
+    notifyAll();
+  }
+
+  @Override
+  public synchronized long removeLong() {
+    while (size == 0) {
+      // queue is empty
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+
+    long elem = array[head];
+    head = (head + 1) % array.length;
+
+    size--;
+    notifyAll();
+
+    return elem;
+  }
+
+  @Override
+  public synchronized boolean offerLong(long elem) {
+    if (size == array.length) {
+      return false;
+    }
+    array[(head + size) % array.length] = elem;
+    size++;
+    notifyAll();
+    return true;
+  }
+
+  @Override
+  public synchronized long pollLong(long ifEmpty) {
+    if (size == 0) {
+      return ifEmpty;
+    }
+    return removeLong();
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends LongBQueueTest {
+    @Override
+    LongBQueue createLongBQueue(int capacity) {
+      return new MLongBQueue(capacity);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free implementation of queue - unbounded linked variant for
+ * multiple producers and a single consumer (after Vyukov's
+ * node-based MPSC queue).
+ *
+ * Any number of threads may add elements, but only one thread may call
+ * the removing methods (<code>remove</code>, <code>poll</code>,
+ * <code>drainTo</code>) at any time. A producer appends its node with
+ * a single <code>getAndSet</code> on <code>tail</code> and then links
+ * it to its predecessor with a lazy write; the consumer follows the
+ * links from <code>head</code> without any atomic read-modify-write.
+ * Between those two steps of a producer the queue looks empty to
+ * the consumer.
+ *
+ * @param <E> Type of elements.
+ */
+public class MPSCBQueueU<E> implements BQueue<E> {
+
+  /**
+   * Marker returned by single removal attempts on an empty queue
+   * (<code>null</code> is a valid element).
+   */
+  private static final Object EMPTY = new Object();
+
+  // The reference held by a node is its successor.
+  @SuppressWarnings("serial")
+  private static final class Node<E> extends AtomicReference<Node<E>> {
+    E value;
+
+    Node(E value) {
+      this.value = value;
+    }
+  }
+
+  private final AtomicReference<Node<E>> tail;
+  private final LongAdder added;
+  private final AtomicLong removed;
+  private final WaitStrategy waitStrategy;
+
+  // Consumer-only: the last node consumed (initially a dummy node).
+  private Node<E> head;
+
+  /**
+   * Constructor.
+   * @param backoff Flag to enable/disable the use of back-off.
+   */
+  public MPSCBQueueU(boolean backoff) {
+    this(WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param ws Wait strategy for removals on an empty queue.
+   */
+  public MPSCBQueueU(WaitStrategy ws) {
+    head = new Node<>(null);
+    tail = new AtomicReference<>(head);
+    added = new LongAdder();
+    removed = new AtomicLong(0);
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int capacity() {
+    return UNBOUNDED;
+  }
+
+  @Override
+  public int size() {
+    long r = removed.get();
+    long a = added.sum();
+    return (int) Math.max(0, a - r);
+  }
+
+  @Override
+  public void add(E elem) {
+    Node<E> node = new Node<>(elem);
+    tail.getAndSet(node).lazySet(node);
+    added.increment();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = tryRemove()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    if (elems.isEmpty()) {
+      return;
+    }
+    // Link the batch privately, then append it with a single getAndSet.
+    Node<E> first = null, last = null;
+    for (E elem : elems) {
+      Node<E> node = new Node<>(elem);
+      if (first == null) {
+        first = node;
+      } else {
+        last.lazySet(node);
+      }
+      last = node;
+    }
+    tail.getAndSet(last).lazySet(first);
+    added.add(elems.size());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    dst.add(remove());
+    int n = 1;
+    Object elem;
+    while (n < max && (elem = tryRemove()) != EMPTY) {
+      dst.add((E) elem);
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Single attempt at removing an element.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  private Object tryRemove() {
+    Node<E> next = head.get();
+    if (next == null) {
+      return EMPTY;
+    }
+    E elem = next.value;
+    // next becomes the dummy node
+    next.value = null;
+    head = next;
+    removed.lazySet(removed.get() + 1);
+    return elem;
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends SingleConsumerBQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new MPSCBQueueU<>(false);
+    }
+
+    @Override
+    boolean multipleProducers() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package pc.bqueue;
+
+import java.nio.ByteBuffer;
+
+import pc.util.UnexpectedException;
+
+/**
+ * Monitor-based queue of fixed-size binary records, stored off-heap.
+ * 
+ * Records are copied in and out of a single direct {@link ByteBuffer}
+ * used as a ring (same logic as {@link MBQueue}), so queued records are
+ * neither Java objects nor part of the heap the garbage collector scans.
+ * Callers are expected to reuse their own source / destination buffers.
+ */
+public class OffHeapBQueue {
+
+  private final ByteBuffer buffer;
+  private final int recordSize;
+  private final int capacity;
+  private int head, size;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity, in records.
+   * @param recordSize Size of each record, in bytes.
+   * @throws IllegalArgumentException if {@code capacity <= 0}, 
+   *         {@code recordSize <= 0}, or the queue would not fit 
+   *         in a single buffer.
+   */
+  public OffHeapBQueue(int capacity, int recordSize) {
+    if (capacity <= 0 || recordSize <= 0 
+        || (long) capacity * recordSize > Integer.MAX_VALUE)
+      throw new IllegalArgumentException();
+    this.capacity = capacity;
+    this.recordSize = recordSize;
+    buffer = ByteBuffer.allocateDirect(capacity * recordSize);
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Get queue capacity.
+   * @return The fixed queue capacity, in records.
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the size of each record.
+   * @return Record size in bytes.
+   */
+  public int recordSize() {
+    return recordSize;
+  }
+
+  /**
+   * Get the size of the queue.
+   * @return The number of records in the queue.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Add a record to the queue, blocking while the queue is full.
+   * 
+   * The record is copied from the next <code>recordSize()</code> bytes 
+   * of <code>src</code>, whose position is advanced accordingly.
+   * 
+   * @param src Source buffer.
+   * @throws IllegalArgumentException if {@code src.remaining() < recordSize()}
+   */
+  public synchronized void add(ByteBuffer src) {
+    checkRemaining(src);
+    while (size == capacity) {
+      // queue is full
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    put(src);
+  }
+
+  /**
+   * Add a record to the queue if there is space for it, without blocking.
+   * 
+   * @param src Source buffer, as in {@link #add(ByteBuffer)}.
+   * @return <code>false</code> if the queue was full (<code>src</code> is left untouched).
+   * @throws IllegalArgumentException if {@code src.remaining() < recordSize()}
+   */
+  public synchronized boolean offer(ByteBuffer src) {
+    checkRemaining(src);
+    if (size == capacity)
+      return false;
+    put(src);
+    return true;
+  }
+
+  /**
+   * Remove a record from the queue, blocking while the queue is empty.
+   * 
+   * The record is copied into the next <code>recordSize()</code> bytes 
+   * of <code>dst</code>, whose position is advanced accordingly.
+   * 
+   * @param dst Destination buffer.
+   * @throws IllegalArgumentException if {@code dst.remaining() < recordSize()}
+   */
+  public synchronized void remove(ByteBuffer dst) {
+    checkRemaining(dst);
+    while (size == 0) {
+      // queue is empty
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        throw new UnexpectedException(e);
+      }
+    }
+    take(dst);
+  }
+
+  /**
+   * Remove a record from the queue if one is available, without blocking.
+   * 
+   * @param dst Destination buffer, as in {@link #remove(ByteBuffer)}.
+   * @return <code>false</code> if the queue was empty (<code>dst</code> is left untouched).
+   * @throws IllegalArgumentException if {@code dst.remaining() < recordSize()}
+   */
+  public synchronized boolean poll(ByteBuffer dst) {
+    checkRemaining(dst);
+    if (size == 0)
+      return false;
+    take(dst);
+    return true;
+  }
+
+  private void checkRemaining(ByteBuffer b) {
+    if (b.remaining() < recordSize)
+      throw new IllegalArgumentException();
+  }
+
+  // Absolute bulk copies: no slices or duplicates are allocated.
+  private void put(ByteBuffer src) {
+    int offset = ((head + size) % capacity) * recordSize;
+    buffer.put(offset, src, src.position(), recordSize);
+    src.position(src.position() + recordSize);
+    size++;
+    notifyAll();
+  }
+
+  private void take(ByteBuffer dst) {
+    dst.put(dst.position(), buffer, head * recordSize, recordSize);
+    dst.position(dst.position() + recordSize);
+    head = (head + 1) % capacity;
+    size--;
+    notifyAll();
+  }
+}
@@ -0,0 +1,85 @@
+package pc.bqueue;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cooperari.CSystem;
+import org.cooperari.config.CMaxTrials;
+import org.cooperari.config.CRaceDetection;
+import org.cooperari.config.CScheduling;
+import org.cooperari.core.scheduling.CProgramStateFactory;
+import org.cooperari.core.scheduling.CSchedulerFactory;
+import org.cooperari.junit.CJUnitRunner;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+@SuppressWarnings("javadoc")
+@RunWith(CJUnitRunner.class)
+@CMaxTrials(25)
+@CRaceDetection(false)
+@CScheduling(schedulerFactory=CSchedulerFactory.MEMINI, stateFactory=CProgramStateFactory.RAW)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class OffHeapBQueueTest {
+
+  static void add(OffHeapBQueue q, long v) {
+    ByteBuffer src = ByteBuffer.allocate(q.recordSize());
+    src.putLong(0, v);
+    q.add(src);
+    assertEquals(q.recordSize(), src.position());
+  }
+
+  static long remove(OffHeapBQueue q) {
+    ByteBuffer dst = ByteBuffer.allocate(q.recordSize());
+    q.remove(dst);
+    assertEquals(q.recordSize(), dst.position());
+    return dst.getLong(0);
+  }
+
+  void test1(int capacity) {
+    OffHeapBQueue q = new OffHeapBQueue(capacity, 16);
+    AtomicLong a = new AtomicLong(), b = new AtomicLong(), c = new AtomicLong();
+    CSystem.forkAndJoin(
+        () -> add(q, 1),
+        () -> add(q, 10),
+        () -> add(q, 100),
+        () -> a.set(remove(q)),
+        () -> b.set(remove(q)),
+        () -> c.set(remove(q))
+        );
+    assertEquals(0, q.size());
+    assertEquals(111, a.get() + b.get() + c.get());
+  }
+
+  @Test
+  public void test1_1() {
+    test1(1);
+  }
+
+  @Test
+  public void test1_3() {
+    test1(3);
+  }
+
+  @Test
+  public void test2() {
+    OffHeapBQueue q = new OffHeapBQueue(2, 8);
+    ByteBuffer b = ByteBuffer.allocate(8);
+    assertFalse(q.poll(b));
+    assertTrue(q.offer(b.putLong(0, 1)));
+    b.clear();
+    assertTrue(q.offer(b.putLong(0, 2)));
+    b.clear();
+    assertFalse(q.offer(b.putLong(0, 3)));
+    assertEquals(0, b.position());
+    assertTrue(q.poll(b));
+    assertEquals(1, b.getLong(0));
+    b.clear();
+    assertTrue(q.poll(b));
+    assertEquals(2, b.getLong(0));
+    assertEquals(0, q.size());
+  }
+}
@@ -0,0 +1,180 @@
+package pc.bqueue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import pc.util.PaddedAtomicLong;
+
+/**
+ * Rooms utility class - blocking variant.
+ *
+ * The state is packed as in {@link Rooms}. A thread that cannot enter
+ * its room spins for a few attempts and then parks in the wait list of
+ * that room. The last occupant to leave a room unparks the waiters of
+ * the next room (in round-robin order) that has any, so waiting
+ * threads do not use the processor while another room is busy.
+ *
+ * A waiter checks the state again after joining the wait list, and a
+ * last occupant frees the room before looking at the wait lists, so
+ * a wake-up is never lost. Like {@link Rooms}, there is no fairness
+ * guarantee: a woken waiter may lose the race to threads entering
+ * another room (see {@link FairRooms}).
+ */
+public final class ParkingRooms implements RoomSynchronizer {
+
+  private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+  /**
+   * Default number of spinning attempts before parking.
+   */
+  public static final int DEFAULT_SPINS = 100;
+
+  /**
+   * Number of rooms.
+   */
+  private final int numberOfRooms;
+
+  /**
+   * Number of failed attempts before parking.
+   */
+  private final int spins;
+
+  /**
+   * Current state (see {@link Rooms}).
+   */
+  private final AtomicLong currentState;
+
+  /**
+   * Parked threads, per room.
+   */
+  private final ConcurrentLinkedQueue<Thread>[] waiters;
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public ParkingRooms(int n) throws IllegalArgumentException {
+    this(n, DEFAULT_SPINS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @param spins Number of failed attempts to enter a room before parking.
+   * @throws IllegalArgumentException if {@code n < 2} or {@code spins < 0}.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public ParkingRooms(int n, int spins) throws IllegalArgumentException {
+    if (n < 2 || spins < 0) {
+      throw new IllegalArgumentException();
+    }
+    numberOfRooms = n;
+    this.spins = spins;
+    currentState = new PaddedAtomicLong(0);
+    waiters = new ConcurrentLinkedQueue[n];
+    for (int i = 0; i < n; i++) {
+      waiters[i] = new ConcurrentLinkedQueue<>();
+    }
+  }
+
+  @Override
+  public int count() {
+    return numberOfRooms;
+  }
+
+  @Override
+  public void enter(int r) {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    for (int attempt = 0; !tryEnter(r); attempt++) {
+      if (Backoff.saturate(attempt) < spins) {
+        Thread.onSpinWait();
+        continue;
+      }
+      Thread me = Thread.currentThread();
+      waiters[r].add(me);
+      // re-check: the last occupant may have left before we were listed
+      if (tryEnter(r)) {
+        waiters[r].remove(me);
+        return;
+      }
+      LockSupport.park(this);
+      // usually removed by the thread that unparked us
+      waiters[r].remove(me);
+    }
+  }
+
+  @Override
+  public void leave(int r) {
+    if (r < 0 || r >= numberOfRooms)
+      throw new IllegalArgumentException();
+
+    long s = currentState.get();
+    if ((s & COUNT_MASK) == 0 || room(s) != r) {
+      throw new IllegalStateException();
+    }
+    if ((currentState.getAndDecrement() & COUNT_MASK) == 1) {
+      wakeNext(r);
+    }
+  }
+
+  /**
+   * Single attempt at entering a room.
+   * @param r Room number.
+   * @return <code>true</code> if the room was entered.
+   */
+  private boolean tryEnter(int r) {
+    long s = currentState.get();
+    if ((s & COUNT_MASK) == 0) {
+      return currentState.compareAndSet(s, pack(r, 1));
+    }
+    return room(s) == r && currentState.compareAndSet(s, s + 1);
+  }
+
+  /**
+   * Unpark the waiters of the next room with any, starting after
+   * the room just left.
+   * @param r Room just left.
+   */
+  private void wakeNext(int r) {
+    for (int i = 1; i <= numberOfRooms; i++) {
+      ConcurrentLinkedQueue<Thread> q = waiters[(r + i) % numberOfRooms];
+      if (!q.isEmpty()) {
+        Thread t;
+        while ((t = q.poll()) != null) {
+          LockSupport.unpark(t);
+        }
+        return;
+      }
+    }
+  }
+
+  private static long pack(int room, long count) {
+    return ((long) room << 32) | count;
+  }
+
+  private static int room(long s) {
+    return (int) (s >>> 32);
+  }
+
+  @Override
+  public String toString() {
+    long s = currentState.get();
+    return (s & COUNT_MASK) == 0 ? "-1/0" : room(s) + "/" + (s & COUNT_MASK);
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends RoomsTest {
+    @Override
+    RoomSynchronizer createRooms(int numberOfRooms) {
+      return new ParkingRooms(numberOfRooms);
+    }
+  }
+}
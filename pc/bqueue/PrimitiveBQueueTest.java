@@ -0,0 +1,128 @@
+package pc.bqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cooperari.CSystem;
+import org.cooperari.config.CMaxTrials;
+import org.cooperari.config.CRaceDetection;
+import org.cooperari.config.CScheduling;
+import org.cooperari.core.scheduling.CProgramStateFactory;
+import org.cooperari.core.scheduling.CSchedulerFactory;
+import org.cooperari.junit.CJUnitRunner;
+
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests shared by {@link IntBQueueTest} and {@link LongBQueueTest},
+ * written against a <code>long</code> view of the queue.
+ */
+@SuppressWarnings("javadoc")
+@RunWith(CJUnitRunner.class)
+@CMaxTrials(25)
+@CRaceDetection(false)
+@CScheduling(schedulerFactory=CSchedulerFactory.MEMINI, stateFactory=CProgramStateFactory.RAW)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public abstract class PrimitiveBQueueTest {
+
+  interface Queue {
+    int size();
+    void add(long elem);
+    long remove();
+    boolean offer(long elem);
+    long poll(long ifEmpty);
+  }
+
+  abstract Queue createQueue(int capacity);
+
+  abstract long minValue();
+
+  abstract long maxValue();
+
+  void test1(int capacity) {
+    Queue q = createQueue(capacity);
+    AtomicLong a = new AtomicLong();
+    AtomicLong b = new AtomicLong();
+    AtomicLong c = new AtomicLong();
+    CSystem.forkAndJoin(
+        () -> { q.add(1); },
+        () -> { q.add(10);},
+        () -> { q.add(-100);},
+        () -> { a.set(q.remove()); },
+        () -> { b.set(q.remove()); },
+        () -> { c.set(q.remove()); }
+        );
+    assertEquals(0, q.size());
+    assertEquals(-89, a.get() + b.get() + c.get());
+  }
+
+  @Test
+  public void test1_1() {
+    test1(1);
+  }
+
+  @Test
+  public void test1_3() {
+    test1(3);
+  }
+
+  @Test
+  public void test2() {
+    Queue q = createQueue(3);
+    AtomicLong a = new AtomicLong();
+    AtomicLong b = new AtomicLong();
+    AtomicLong c = new AtomicLong();
+    CSystem.forkAndJoin(
+        () -> { q.add(maxValue()); q.add(minValue()); q.add(0); },
+        () -> { a.set(q.remove()); b.set(q.remove()); c.set(q.remove()); }
+        );
+    assertEquals(0, q.size());
+    assertEquals(maxValue(), a.get());
+    assertEquals(minValue(), b.get());
+    assertEquals(0, c.get());
+  }
+
+  @Test
+  public void test3() {
+    Queue q = createQueue(1);
+    assertEquals(-1, q.poll(-1));
+    assertTrue(q.offer(5));
+    assertFalse(q.offer(6));
+    assertEquals(1, q.size());
+    assertEquals(5, q.poll(-1));
+    assertEquals(-1, q.poll(-1));
+    assertEquals(0, q.size());
+  }
+
+  @Test
+  public void test4() {
+    Queue q = createQueue(2);
+    List<Long> l = new ArrayList<>();
+    CSystem.forkAndJoin(
+        () -> {
+          for (long v : new long[] { maxValue(), minValue(), 0 }) {
+            while (!q.offer(v)) {
+              // full
+            }
+          }
+        },
+        () -> {
+          while (l.size() < 3) {
+            long v = q.poll(1);
+            if (v != 1) {
+              l.add(v);
+            }
+          }
+        }
+        );
+    assertEquals(0, q.size());
+    assertEquals(Arrays.asList(maxValue(), minValue(), 0L), l);
+  }
+}
@@ -0,0 +1,141 @@
+package pc.bqueue;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+import pc.util.Benchmark;
+import pc.util.Benchmark.BThread;
+
+/**
+ * Benchmark program comparing queues of small records kept as heap 
+ * objects with the off-heap record queue.
+ */
+public class RecordQueueBenchmark {
+
+  private static final int DURATION = 5;
+  private static final int MAX_THREADS = 32;
+  private static final int RECORD_SIZE = 32;
+  private static final int CAPACITY = 1 << 20;
+
+  /**
+   * Program to run the benchmark.
+   * @param args Arguments are ignored.
+   */
+  public static void main(String[] args) {
+    footprint("On-heap", () -> {
+      MBQueue<byte[]> q = new MBQueue<>(CAPACITY);
+      for (int i = 0; i < CAPACITY; i++) {
+        q.add(new byte[RECORD_SIZE]);
+      }
+      return q;
+    });
+    footprint("Off-heap", () -> {
+      OffHeapBQueue q = new OffHeapBQueue(CAPACITY, RECORD_SIZE);
+      ByteBuffer src = ByteBuffer.allocate(RECORD_SIZE);
+      for (int i = 0; i < CAPACITY; i++) {
+        src.clear();
+        q.add(src);
+      }
+      return q;
+    });
+
+    for (int t = 2; t <= MAX_THREADS; t = t * 2) {
+      runBenchmark("On-heap", t, new HeapOperation(new MBQueue<>(CAPACITY)));
+      runBenchmark("Off-heap", t, new OffHeapOperation(new OffHeapBQueue(CAPACITY, RECORD_SIZE)));
+    }
+  }
+
+  private static void footprint(String desc, Supplier<Object> fill) {
+    System.gc();
+    long heap0 = usedHeap(), direct0 = usedDirect();
+    Object q = fill.get();
+    System.gc();
+    long heap = usedHeap() - heap0, direct = usedDirect() - direct0;
+    Reference.reachabilityFence(q);
+    System.out.printf("%20s -> %d records: %8.2f MB heap, %8.2f MB direct%n",
+        desc, CAPACITY, heap / 1e6, direct / 1e6);
+  }
+
+  private static long usedHeap() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long usedDirect() {
+    long used = 0;
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct"))
+        used += pool.getMemoryUsed();
+    }
+    return used;
+  }
+
+  private static void runBenchmark(String desc, int threads, Benchmark.Operation op) {
+    Benchmark b = new Benchmark(threads, DURATION, op, false, true);
+    System.out.printf("%2d,%20s -> ", threads, desc);
+    double throughput = b.run();
+    System.out.printf("%10.2f thousand ops/s per thread, %8.2f bytes/op, %4d GCs, %6d ms GC%n", 
+        throughput, b.bytesPerStep(), b.gcCount(), b.gcMillis());
+  }
+
+  private static class HeapOperation implements Benchmark.Operation {
+    private final MBQueue<byte[]> queue;
+
+    HeapOperation(MBQueue<byte[]> q) {
+      this.queue = q;
+    }
+
+    public void teardown() {
+      // Consumers only remove above MAX_THREADS records, so they never
+      // block; draining down to that level releases blocked producers.
+      while (queue.size() > MAX_THREADS) {
+        queue.remove();
+      }
+    }
+
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      if (t.getTId() % 2 == 0) {
+        queue.add(new byte[RECORD_SIZE]);
+      } else if (queue.size() > MAX_THREADS) {
+        queue.remove();
+      }
+    }
+  }
+
+  private static class OffHeapOperation implements Benchmark.Operation {
+    private final OffHeapBQueue queue;
+    private final ByteBuffer[] buffers = new ByteBuffer[MAX_THREADS];
+
+    OffHeapOperation(OffHeapBQueue q) {
+      this.queue = q;
+      for (int i = 0; i < MAX_THREADS; i++) {
+        buffers[i] = ByteBuffer.allocate(RECORD_SIZE);
+      }
+    }
+
+    public void teardown() {
+      // See HeapOperation.teardown().
+      ByteBuffer dst = ByteBuffer.allocate(RECORD_SIZE);
+      while (queue.size() > MAX_THREADS) {
+        dst.clear();
+        queue.remove(dst);
+      }
+    }
+
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      ByteBuffer b = buffers[t.getTId()];
+      b.clear();
+      if (t.getTId() % 2 == 0) {
+        queue.add(b);
+      } else if (queue.size() > MAX_THREADS) {
+        queue.remove(b);
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package pc.bqueue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Positions and sequence numbers of a lock-free ring, as in
+ * {@link LFRingBQueue}, apart from the array of elements.
+ *
+ * Queues of primitive elements keep the elements in an array of their
+ * own type and use this class to claim, fill and free its slots. The
+ * sequence number of slot <code>i</code> is <code>2 * pos</code> when the
+ * slot is free for the producer of position <code>pos</code>, and
+ * <code>2 * pos + 1</code> once that producer filled it.
+ */
+final class RingSequence {
+
+  private final int capacity;
+  private final AtomicLongArray sequence;
+  private final AtomicLong head, tail;
+
+  /**
+   * Constructor.
+   * @param capacity Ring capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  RingSequence(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    this.capacity = capacity;
+    sequence = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequence.set(i, 2L * i);
+    }
+    head = new AtomicLong(0);
+    tail = new AtomicLong(0);
+  }
+
+  /**
+   * Get ring capacity.
+   * @return The ring capacity.
+   */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Get number of positions claimed by producers and not yet by consumers.
+   * @return The number of elements in the ring.
+   */
+  int size() {
+    long h = head.get();
+    long t = tail.get();
+    return (int) Math.min(t - h, capacity);
+  }
+
+  /**
+   * Get the slot of a position.
+   * @param pos Position.
+   * @return Index of the slot in the array of elements.
+   */
+  int slot(long pos) {
+    return (int) (pos % capacity);
+  }
+
+  /**
+   * Try to claim the next position for a producer.
+   * @return The position claimed, or <code>-1</code> if the ring is full.
+   */
+  long claimTail() {
+    return claim(tail, 0);
+  }
+
+  /**
+   * Try to claim the next position for a consumer.
+   * @return The position claimed, or <code>-1</code> if the ring is empty.
+   */
+  long claimHead() {
+    return claim(head, 1);
+  }
+
+  /**
+   * Mark the slot of a position claimed by a producer as filled.
+   * @param pos Position.
+   */
+  void filled(long pos) {
+    sequence.set(slot(pos), 2 * pos + 1);
+  }
+
+  /**
+   * Mark the slot of a position claimed by a consumer as free, for the
+   * producer of the next lap.
+   * @param pos Position.
+   */
+  void freed(long pos) {
+    sequence.set(slot(pos), 2 * (pos + capacity));
+  }
+
+  /**
+   * Try to claim the next position of one end of the ring.
+   * @param end Counter of the end (<code>tail</code> or <code>head</code>).
+   * @param ready Offset of the sequence number that makes a slot ready
+   *              for that end (0 = free, 1 = filled).
+   * @return The position claimed, or <code>-1</code> if the ring is full
+   *         (for <code>tail</code>) or empty (for <code>head</code>).
+   */
+  private long claim(AtomicLong end, int ready) {
+    long pos = end.get();
+    while (true) {
+      long diff = sequence.get(slot(pos)) - (2 * pos + ready);
+      if (diff == 0) {
+        if (end.compareAndSet(pos, pos + 1)) {
+          return pos;
+        }
+        pos = end.get();
+      } else if (diff < 0) {
+        return -1;
+      } else {
+        pos = end.get();
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package pc.bqueue;
+
+/**
+ * Rooms synchronization: any number of threads may be in the same room
+ * at the same time, but threads in different rooms exclude each other.
+ *
+ * @see Rooms
+ */
+public interface RoomSynchronizer {
+
+  /**
+   * Get number of rooms.
+   * @return The number of rooms.
+   */
+  int count();
+
+  /**
+   * Enter room, waiting while another room is occupied.
+   * @param r Room number.
+   * @throws IllegalArgumentException if <code>r</code> is not a valid room.
+   */
+  void enter(int r);
+
+  /**
+   * Leave room.
+   * @param r Room number.
+   * @throws IllegalArgumentException if <code>r</code> is not a valid room.
+   * @throws IllegalStateException if room <code>r</code> is not occupied.
+   */
+  void leave(int r);
+}
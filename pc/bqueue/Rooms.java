@@ -1,12 +1,20 @@
 package pc.bqueue;
 
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.UnaryOperator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pc.util.PaddedAtomicLong;
 
 /**
  * Rooms utility class.
+ *
+ * The whole state is packed in a single <code>long</code>: the
+ * occupied room in the upper 32 bits and the number of occupants
+ * in the lower 32 bits (no occupants means no room is occupied).
+ * Neither <code>enter</code> nor <code>leave</code> allocate.
  */
-public final class Rooms {
+public final class Rooms implements RoomSynchronizer, Instrumentable {
+
+  private static final long COUNT_MASK = 0xFFFF_FFFFL;
 
   /**
    * Number of rooms.
@@ -14,124 +22,132 @@ public final class Rooms {
   private final int numberOfRooms;
 
   /**
-   * Back-off flag.
+   * Wait strategy for failed state transitions.
    */
-  private final boolean useBackoff;
+  private final WaitStrategy waitStrategy;
 
   /**
    * Current state.
    */
-  private final AtomicReference<State> currentState 
-  = new AtomicReference<>(State.FREE);
+  private final AtomicLong currentState;
+
+  /**
+   * Event counters.
+   */
+  private Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
-   * 
+   *
    * @param n Number of rooms.
    * @param backoff Enable / disable the use of back-off
    * @throws IllegalArgumentException if {@code n < 2}.
    */
   public Rooms(int n, boolean backoff) throws IllegalArgumentException {
+    this(n, WaitStrategy.of(backoff), false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @param backoff Enable / disable the use of back-off
+   * @param padded Keep the state on a cache line of its own.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public Rooms(int n, boolean backoff, boolean padded) throws IllegalArgumentException {
+    this(n, WaitStrategy.of(backoff), padded);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public Rooms(int n, WaitStrategy ws) throws IllegalArgumentException {
+    this(n, ws, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @param padded Keep the state on a cache line of its own.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public Rooms(int n, WaitStrategy ws, boolean padded) throws IllegalArgumentException {
     if (n < 2) {
       throw new IllegalArgumentException();
     }
     numberOfRooms = n;
-    useBackoff = backoff;
+    waitStrategy = ws;
+    currentState = padded ? new PaddedAtomicLong(0) : new AtomicLong(0);
   }
 
-  /**
-   * Get number of rooms.
-   * @return The number of rooms.
-   */
+  @Override
   public int count() {
     return numberOfRooms;
   }
 
-  /**
-   * Enter room.
-   * @param r Room number.
-   */
+  @Override
   public void enter(int r)  {
     if (r < 0 || r >= numberOfRooms) {
       throw new IllegalArgumentException();
     }
-    
-    changeState(s -> s.onEnter(r));
 
-    if (currentState.get().room != r) {
-      throw new IllegalStateException();
+    int attempt = 0;
+    while (true) {
+      long s = currentState.get();
+      long count = s & COUNT_MASK;
+      if (count == 0) {
+        if (currentState.compareAndSet(s, pack(r, 1))) {
+          break;
+        }
+        counters.increment(Counters.Event.ROOM_CAS_FAILURES);
+      } else if (room(s) == r) {
+        if (currentState.compareAndSet(s, s + 1)) {
+          break;
+        }
+        counters.increment(Counters.Event.ROOM_CAS_FAILURES);
+      }
+      waitStrategy.idle(attempt++);
     }
+    waitStrategy.done(attempt);
   }
 
-  /**
-   * Leave room.
-   * @param r Room.
-   */
+  @Override
   public void leave(int r) {
     if (r < 0 || r >= numberOfRooms)
       throw new IllegalArgumentException();
 
-    changeState(s -> s.onLeave(r));
-  }
-
-  /**
-   * State change handling.
-   * @param f State transition.
-   * @return Old state before transition. 
-   */
-  private State changeState(UnaryOperator<State> f) {
-    State oldS, newS;
-    while(true) {
-      oldS = currentState.get();
-      newS = f.apply(oldS);
-      if (oldS != newS && currentState.compareAndSet(oldS,newS)) {
-        break;
-      }
-      if (useBackoff) { 
-        Backoff.delay();
-      }
-    } 
-    if (useBackoff) { 
-      Backoff.reset();
+    long s = currentState.get();
+    if ((s & COUNT_MASK) == 0 || room(s) != r) {
+      throw new IllegalStateException();
     }
-    return oldS;
+    // While we are in room r the room cannot change,
+    // so a plain decrement is enough.
+    currentState.getAndDecrement();
   }
 
-  /* State class */
-  private static class State {
-    static final State FREE = new State(-1, 0, 0);
-    final int count;
-    final int room;
-
-    State(int room, int count, int entering) {
-      this.room = room;
-      this.count = count;
-    }
-    
-    State onEnter(int r) {
-      State result;
-      if (this == FREE) {
-        result = new State(r, 1, 0);
-      } else if (room == r) {
-        result = new State(r, count+1, 0);
-      } else {
-        result = this;
-      }
-      return result;
-    }
+  private static long pack(int room, long count) {
+    return ((long) room << 32) | count;
+  }
 
-  
-    State onLeave(int r) {
-      if (room != r) {
-        throw new IllegalStateException();
-      }
-      return count == 1 ? FREE : new State(r, count - 1, 0);
-    }
+  private static int room(long s) {
+    return (int) (s >>> 32);
+  }
 
-    @Override
-    public String toString() {
-      return room + "/" + count;
-    }
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
   }
 
+  @Override
+  public String toString() {
+    long s = currentState.get();
+    return (s & COUNT_MASK) == 0 ? "-1/0" : room(s) + "/" + (s & COUNT_MASK);
+  }
 }
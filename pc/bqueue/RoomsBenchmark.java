@@ -0,0 +1,122 @@
+package pc.bqueue;
+
+import java.util.function.IntFunction;
+
+import pc.util.Benchmark;
+import pc.util.Benchmark.BThread;
+
+/**
+ * Benchmark program for room synchronizers.
+ *
+ * Each step enters and leaves a room. Besides throughput, the program
+ * reports the bytes allocated per step by the benchmark threads and,
+ * in the one-against-many pattern, how long the lone thread waits to
+ * enter its room.
+ */
+public class RoomsBenchmark {
+
+  private static final int DURATION = 5;
+  private static final int MAX_THREADS = 64;
+  private static final int ROOMS = 3;
+
+  /**
+   * Room access patterns.
+   */
+  private enum Pattern {
+    /** All threads use room 0. */
+    SAME_ROOM,
+    /** Each thread moves on to the next room every so often. */
+    CROSS_ROOM,
+    /** Thread 0 uses room 1, all others use room 0. */
+    ONE_VS_MANY
+  }
+
+  /**
+   * Program to run a benchmark over room synchronizers.
+   * @param args Arguments are ignored.
+   */
+  public static void main(String[] args) {
+    for (int t = 2; t <= MAX_THREADS; t = t * 2) {
+      for (Pattern p : Pattern.values()) {
+        runBenchmark("Allocating", t, p, n -> new AllocatingRooms(n, true));
+        runBenchmark("Packed", t, p, n -> new Rooms(n, true));
+        runBenchmark("Adaptive", t, p, n -> new Rooms(n, new AdaptiveBackoff()));
+        runBenchmark("Striped", t, p,
+            n -> new StripedRooms(n, WaitStrategy.EXPONENTIAL_SLEEP));
+        runBenchmark("Fair", t, p, n -> new FairRooms(n));
+        runBenchmark("Parking", t, p, n -> new ParkingRooms(n));
+      }
+    }
+  }
+
+  private static void runBenchmark(String desc, int threads, Pattern pattern,
+                                   IntFunction<RoomSynchronizer> factory) {
+    RoomSynchronizer rooms = factory.apply(ROOMS);
+    RoomsOperation op = new RoomsOperation(rooms, pattern, threads);
+    Benchmark b = new Benchmark(threads, DURATION, op, false, true);
+    System.out.printf("%2d,%12s,%16s,%11s -> ", threads, desc,
+        rooms.getClass().getSimpleName(), pattern.name().toLowerCase());
+    double throughput = b.run();
+    System.out.printf("%10.2f thousand ops/s per thread, %8.2f bytes/op, %5d ms GC",
+        throughput, b.bytesPerStep(), b.gcMillis());
+    if (pattern == Pattern.ONE_VS_MANY) {
+      System.out.printf(", lone thread wait mean %10.2f us max %10.2f us",
+          op.meanWaitNanos() / 1e3, op.maxWaitNanos / 1e3);
+    }
+    System.out.println();
+  }
+
+  private static class RoomsOperation implements Benchmark.Operation {
+    // Per-thread counters are STRIDE slots apart to avoid false sharing
+    private static final int STRIDE = 8;
+    private static final int ROOM_PERIOD = 1024;
+
+    private final RoomSynchronizer rooms;
+    private final Pattern pattern;
+    private final long[] steps;
+
+    // Written by thread 0 only (one-against-many pattern)
+    private long waits, waitNanos, maxWaitNanos;
+
+    RoomsOperation(RoomSynchronizer rooms, Pattern pattern, int threads) {
+      this.rooms = rooms;
+      this.pattern = pattern;
+      steps = new long[threads * STRIDE];
+    }
+
+    double meanWaitNanos() {
+      return waits == 0 ? 0 : (double) waitNanos / waits;
+    }
+
+    @Override
+    public void step() {
+      BThread t = (Benchmark.BThread) Thread.currentThread();
+      long n = steps[t.getTId() * STRIDE]++;
+      switch (pattern) {
+        case SAME_ROOM:
+          rooms.enter(0);
+          rooms.leave(0);
+          break;
+        case CROSS_ROOM:
+          int r = (int) ((n / ROOM_PERIOD) % ROOMS);
+          rooms.enter(r);
+          rooms.leave(r);
+          break;
+        case ONE_VS_MANY:
+          if (t.getTId() == 0) {
+            long start = System.nanoTime();
+            rooms.enter(1);
+            long wait = System.nanoTime() - start;
+            rooms.leave(1);
+            waits++;
+            waitNanos += wait;
+            maxWaitNanos = Math.max(maxWaitNanos, wait);
+          } else {
+            rooms.enter(0);
+            rooms.leave(0);
+          }
+          break;
+      }
+    }
+  }
+}
@@ -34,8 +34,12 @@ public class RoomsTest {
     }
   }
   
+  RoomSynchronizer createRooms(int numberOfRooms) {
+    return new Rooms(numberOfRooms, false);
+  }
+
   void doTest(int numberOfRooms, int threadsPerRoom) {
-    Rooms rooms = new Rooms(numberOfRooms, false);
+    RoomSynchronizer rooms = createRooms(numberOfRooms);
     AtomicInteger[] counts = new AtomicInteger[numberOfRooms];
     boolean[] inRoom = new boolean[numberOfRooms];
     for (int i = 0; i < numberOfRooms; i++) {
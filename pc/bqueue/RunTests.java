@@ -13,12 +13,39 @@ import org.junit.runners.Suite.SuiteClasses;
   //  MBQueueU.Test.class,
   //  LFBQueue.Test.class,
   //  LFBQueueU.Test.class,
+   TLBQueue.Test.class,
+   LFRingBQueue.Test.class,
+   LFSegmentedBQueue.Test.class,
+   SPSCBQueue.Test.class,
+   MPSCBQueueU.Test.class,
+  //  MIntBQueue.Test.class,
+  //  LFIntBQueue.Test.class,
+  //  MLongBQueue.Test.class,
+  //  LFLongBQueue.Test.class,
    LFDeque.Test.class,
+   WSDequeTest.class,
+   RoomsTest.class,
+   AllocatingRooms.Test.class,
+   StripedRooms.Test.class,
+   FairRooms.Test.class,
+   ParkingRooms.Test.class,
+   InstrumentedBQueue.Test.class,
+   InstrumentedBDeque.Test.class,
   // Run STM-based tests only in preemptive mode using cjunitp.sh.
   // Cooperari cannot handle STM-based code with cooperative semantics.
      //STMBQueue.Test.class,
      //STMBQueueU.Test.class,
      //STMDeque.Test.class,
+     //STMSplitBQueue.Test.class,
+     //STMSplitBQueueU.Test.class,
+     //STMSplitDeque.Test.class,
+     //STMPackedBQueue.Test.class,
+     //STMPackedBQueueU.Test.class,
+     //STMPackedDeque.Test.class,
+     //STMChunkedDeque.Test.class,
+     //STMIntBQueue.Test.class,
+     //STMLongBQueue.Test.class,
+     //STMQueuesTest.class,
 
 })
 public class RunTests {
@@ -0,0 +1,238 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free implementation of queue - bounded ring buffer for a single
+ * producer and a single consumer.
+ *
+ * Only one thread may call the adding methods (<code>add</code>,
+ * <code>offer</code>, <code>addAll</code>) and only one thread may call
+ * the removing methods (<code>remove</code>, <code>poll</code>,
+ * <code>drainTo</code>) at any time. With that contract there are no
+ * CAS operations: each side is the only writer of its own counter and
+ * publishes it with a lazy (release) write. Each side also caches the
+ * last value it read of the other side's counter, and only reads it
+ * again when the cached value says the queue is full (or empty).
+ *
+ * @param <E> Type of elements.
+ */
+public class SPSCBQueue<E> implements BQueue<E> {
+
+  /**
+   * Marker returned by single removal attempts on an empty queue
+   * (<code>null</code> is a valid element).
+   */
+  private static final Object EMPTY = new Object();
+
+  private final E[] array;
+  private final AtomicLong head, tail;
+  private final WaitStrategy waitStrategy;
+
+  // Producer-side copy of head.
+  private long headCache;
+
+  // Consumer-side copy of tail.
+  private long tailCache;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public SPSCBQueue(int capacity, boolean backoff) {
+    this(capacity, WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @param ws Wait strategy for adds on a full queue and removals
+   *           on an empty one.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  @SuppressWarnings("unchecked")
+  public SPSCBQueue(int capacity, WaitStrategy ws) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    array = (E[]) new Object[capacity];
+    head = new AtomicLong(0);
+    tail = new AtomicLong(0);
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int capacity() {
+    return array.length;
+  }
+
+  @Override
+  public int size() {
+    long h = head.get();
+    long t = tail.get();
+    return (int) Math.min(Math.max(0, t - h), array.length);
+  }
+
+  @Override
+  public void add(E elem) {
+    int attempt = 0;
+    while (!tryAdd(elem)) {
+      waitStrategy.idle(attempt++);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = tryRemove()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+    return (E) elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return tryAdd(elem);
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (int attempt = 0; !tryAdd(elem); attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    Object elem = tryRemove();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryRemove()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    int i = 0;
+    int attempt = 0;
+    long t = tail.get();
+    while (i < batch.length) {
+      int k = Math.min(free(t), batch.length - i);
+      if (k == 0) {
+        waitStrategy.idle(attempt++);
+        continue;
+      }
+      for (int j = 0; j < k; j++) {
+        array[(int) ((t + j) % array.length)] = (E) batch[i + j];
+      }
+      // publish the whole chunk at once
+      t += k;
+      tail.lazySet(t);
+      i += k;
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    dst.add(remove());
+    long h = head.get();
+    long t = tail.get();
+    // Keep the cached tail in step, since head may move past the old one
+    tailCache = t;
+    int k = (int) Math.min(t - h, max - 1);
+    for (int j = 0; j < k; j++) {
+      int slot = (int) ((h + j) % array.length);
+      dst.add(array[slot]);
+      array[slot] = null;
+    }
+    if (k > 0) {
+      head.lazySet(h + k);
+    }
+    return 1 + k;
+  }
+
+  /**
+   * Get number of free slots, as seen by the producer.
+   * @param t Current tail.
+   * @return Number of free slots.
+   */
+  private int free(long t) {
+    int n = (int) (array.length - (t - headCache));
+    if (n == 0) {
+      headCache = head.get();
+      n = (int) (array.length - (t - headCache));
+    }
+    return n;
+  }
+
+  /**
+   * Single attempt at adding an element.
+   * @param elem Element to add.
+   * @return <code>false</code> if the queue was full.
+   */
+  private boolean tryAdd(E elem) {
+    long t = tail.get();
+    if (free(t) == 0) {
+      return false;
+    }
+    array[(int) (t % array.length)] = elem;
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Single attempt at removing an element.
+   * @return The element removed, or <code>EMPTY</code> if the queue was empty.
+   */
+  private Object tryRemove() {
+    long h = head.get();
+    if (h == tailCache) {
+      tailCache = tail.get();
+      if (h == tailCache) {
+        return EMPTY;
+      }
+    }
+    int slot = (int) (h % array.length);
+    E elem = array[slot];
+    array[slot] = null;
+    head.lazySet(h + 1);
+    return elem;
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends SingleConsumerBQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new SPSCBQueue<>(capacity, false);
+    }
+
+    @Override
+    boolean multipleProducers() {
+      return false;
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package pc.bqueue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 import scala.concurrent.stm.Ref;
 import scala.concurrent.stm.TArray;
 import scala.concurrent.stm.japi.STM;
@@ -9,11 +12,12 @@ import scala.concurrent.stm.japi.STM;
  *
  * @param <E> Type of elements.
  */
-public class STMBQueue<E> implements BQueue<E>{
+public class STMBQueue<E> implements BQueue<E>, Instrumentable, Transactional {
 
   private final Ref.View<Integer> size;
   private final Ref.View<Integer> head;
   private final TArray.View<E> array;
+  private Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
@@ -40,18 +44,11 @@ public class STMBQueue<E> implements BQueue<E>{
 
   @Override
   public void add(E elem) {
-    STM.atomic(() -> {
+    STMSupport.atomic(counters, () -> {
       if (size.get() == array.length()) {
-        STM.retry();
+        STMSupport.retry(counters);
       }
-      array.update((head.get() + size.get()) % array.length(), elem);
-      /*
-      By running the increment outside the atomic
-      block, the size increment might only happen
-      after another operation has taken place, causing
-      some array element to be overriden by another write
-      */
-      STM.increment(size, 1);
+      put(elem);
     });
   }
 
@@ -60,21 +57,158 @@ public class STMBQueue<E> implements BQueue<E>{
     /*
       Not returning the result
     */
-    return STM.atomic(() -> {
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == 0)
+        STMSupport.retry(counters);
+
+      return take();
+    });
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == array.length())
+        return false;
+
+      put(elem);
+      return true;
+    });
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == array.length()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return false;
+      }
+
+      put(elem);
+      return true;
+    });
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, () -> {
       if (size.get() == 0)
-        STM.retry();
+        return null;
+
+      return take();
+    });
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == 0) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return take();
+    });
+  }
+
+  /**
+   * Add an element at the tail. Must be called inside a transaction,
+   * when the queue is not full.
+   * @param elem Element to add.
+   */
+  private void put(E elem) {
+    array.update((head.get() + size.get()) % array.length(), elem);
+    /*
+    By running the increment outside the atomic
+    block, the size increment might only happen
+    after another operation has taken place, causing
+    some array element to be overriden by another write
+    */
+    STM.increment(size, 1);
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the queue is not empty.
+   * @return The element removed.
+   */
+  private E take() {
+    E elem = array.apply(head.get());
+    head.set((head.get() + 1) % array.length());
+    /*
+    Separating these operations into two diferent atomic fields causes 
+    the possibility of another operation running before
+    The size is decremented, which would cause unexpected behaviour
+    Like the list not reporting that it's empty, and returning the same value twice
+    */
+    STM.increment(size, -1);
+    return elem;
+  }
 
-      E elem = array.apply(head.get());
-      head.set((head.get() + 1) % array.length());
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    int i = 0;
+    while (i < batch.length) {
       /*
-      Separating these operations into two diferent atomic fields causes 
-      the possibility of another operation running before
-      The size is decremented, which would cause unexpected behaviour
-      Like the list not reporting that it's empty, and returning the same value twice
+      Each transaction adds as many elements as currently fit,
+      so a batch larger than the capacity can still make progress
       */
-      STM.increment(size, -1);
-      return elem;
+      int from = i;
+      i += STMSupport.atomic(counters, () -> {
+        int free = array.length() - size.get();
+        if (free == 0) {
+          STMSupport.retry(counters);
+        }
+        int k = Math.min(free, batch.length - from);
+        int tail = head.get() + size.get();
+        for (int j = 0; j < k; j++) {
+          array.update((tail + j) % array.length(), (E) batch[from + j]);
+        }
+        STM.increment(size, k);
+        return k;
+      });
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    /*
+      The elements are only handed to dst after the transaction
+      commits, since the transaction body may run more than once
+    */
+    Object[] taken = STMSupport.atomic(counters, () -> {
+      int n = size.get();
+      if (n == 0)
+        STMSupport.retry(counters);
+
+      int k = Math.min(n, max);
+      Object[] out = new Object[k];
+      int h = head.get();
+      for (int j = 0; j < k; j++) {
+        out[j] = array.apply((h + j) % array.length());
+      }
+      head.set((h + k) % array.length());
+      STM.increment(size, -k);
+      return out;
     });
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
   }
 
   /**
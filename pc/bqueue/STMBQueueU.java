@@ -1,5 +1,8 @@
 package pc.bqueue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 import scala.concurrent.stm.Ref;
 import scala.concurrent.stm.TArray;
 import scala.concurrent.stm.japi.STM;
@@ -11,11 +14,12 @@ import java.lang.Thread;
  *
  * @param <E> Type of elements.
  */
-public class STMBQueueU<E> implements BQueue<E>{
+public class STMBQueueU<E> implements BQueue<E>, Instrumentable, Transactional {
 
   private final Ref.View<Integer> size;
   private final Ref.View<Integer> head;
   private final Ref.View<TArray.View<E>> arrayRef;
+  private Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
@@ -42,7 +46,7 @@ public class STMBQueueU<E> implements BQueue<E>{
 
   @Override
   public void add(E elem) {
-    STM.atomic(() -> {
+    STMSupport.atomic(counters, () -> {
 
       TArray.View<E> arrays = arrayRef.get();
 
@@ -62,6 +66,8 @@ public class STMBQueueU<E> implements BQueue<E>{
 
         this.arrayRef.set(newArray);
 
+        STMSupport.resized(counters, size.get());
+
         arrays = newArray;
       }
 
@@ -73,21 +79,163 @@ public class STMBQueueU<E> implements BQueue<E>{
 
   @Override
   public E remove() {
-    return STM.atomic(() -> {
+    return STMSupport.atomic(counters, () -> {
+
+        if (size.get() == 0)
+          STMSupport.retry(counters);
+
+        return take();
+    });
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, () -> {
 
         if (size.get() == 0)
-          STM.retry();
+          return null;
+
+        return take();
+    });
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+
+        if (size.get() == 0) {
+          // Blocks like STM.retry(), but only up to the timeout
+          STMSupport.retryFor(counters, nanos);
+          return null;
+        }
+
+        return take();
+    });
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the queue is not empty.
+   * @return The element removed.
+   */
+  private E take() {
+    TArray.View<E> array = arrayRef.get();
+
+    E elem = array.apply(head.get());
+
+    head.set((head.get() + 1) % array.length());
+
+    STM.increment(size, -1);
+
+    return elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    if (batch.length == 0)
+      return;
+
+    STMSupport.atomic(counters, () -> {
+
+      TArray.View<E> arrays = arrayRef.get();
+
+      int size = this.size.get();
+
+      if (size + batch.length > arrays.length()) {
+
+        // Grow once for the whole batch
+        int newLength = arrays.length() * 2;
+        while (newLength < size + batch.length) {
+          newLength *= 2;
+        }
+
+        TArray.View<E> newArray = STM.newTArray(newLength);
+
+        int head = this.head.get();
+
+        for (int i = 0; i < size; head = (head + 1) % arrays.length()) {
+          newArray.update(i, arrays.apply(head));
+
+          i++;
+        }
+
+        this.head.set(0);
+
+        this.arrayRef.set(newArray);
+
+        STMSupport.resized(counters, size);
+
+        arrays = newArray;
+      }
+
+      int tail = head.get() + size;
+
+      for (int j = 0; j < batch.length; j++) {
+        arrays.update((tail + j) % arrays.length(), (E) batch[j]);
+      }
+
+      STM.increment(this.size, batch.length);
+    });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+
+    // Elements are handed to dst only after the transaction commits
+    Object[] taken = STMSupport.atomic(counters, () -> {
+
+        int n = size.get();
+
+        if (n == 0)
+          STMSupport.retry(counters);
 
         TArray.View<E> array = arrayRef.get();
 
-        E elem = array.apply(head.get());
+        int k = Math.min(n, max);
 
-        head.set((head.get() + 1) % array.length());
+        Object[] out = new Object[k];
 
-        STM.increment(size, -1);
+        int h = head.get();
 
-        return elem;
+        for (int j = 0; j < k; j++) {
+          out[j] = array.apply((h + j) % array.length());
+        }
+
+        head.set((h + k) % array.length());
+
+        STM.increment(size, -k);
+
+        return out;
     });
+
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
   }
 
   /**
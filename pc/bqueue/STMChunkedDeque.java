@@ -0,0 +1,274 @@
+package pc.bqueue;
+
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * STM implementation of deque built from linked fixed-size chunks.
+ *
+ * {@link STMDeque} grows by copying every element into a new array
+ * inside one transaction, whose write set thus grows with the deque and
+ * which conflicts with any concurrent operation. Here elements are kept
+ * in a doubly-linked list of chunks of <code>chunkSize</code> slots:
+ * growth allocates a single chunk and copies nothing, and every
+ * operation touches a constant number of references.
+ *
+ * Each end is given by a chunk and an index in it. The head index is
+ * that of the first element, the tail index that of the slot after the
+ * last element, and both are kept below <code>chunkSize</code> (an end
+ * moves to the next chunk as soon as it reaches the end of a chunk), so
+ * that the deque is empty exactly when both ends are equal. Chunks are
+ * numbered in order, so that the size follows from the ends.
+ *
+ * One emptied chunk is kept past each end, so that operations going
+ * back and forth across a chunk boundary do not allocate; chunks further
+ * away are dropped.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMChunkedDeque<E> implements BDeque<E>, Instrumentable, Transactional {
+
+  /**
+   * Default number of slots per chunk.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 64;
+
+  private static final class Chunk<E> {
+    final long number;
+    final TArray.View<E> slots;
+    final Ref.View<Chunk<E>> prev;
+    final Ref.View<Chunk<E>> next;
+
+    Chunk(long number, int size, Chunk<E> prev, Chunk<E> next) {
+      this.number = number;
+      this.slots = STM.newTArray(size);
+      this.prev = STM.newRef(prev);
+      this.next = STM.newRef(next);
+    }
+  }
+
+  private final int chunkSize;
+  private final IntBoxes boxes;
+  private final Ref.View<Chunk<E>> headChunk;
+  private final Ref.View<Integer> headIndex;
+  private final Ref.View<Chunk<E>> tailChunk;
+  private final Ref.View<Integer> tailIndex;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor using {@link #DEFAULT_CHUNK_SIZE}.
+   */
+  public STMChunkedDeque() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param chunkSize Number of slots per chunk.
+   * @throws IllegalArgumentException if {@code chunkSize <= 1}
+   */
+  public STMChunkedDeque(int chunkSize) {
+    if (chunkSize <= 1)
+      throw new IllegalArgumentException();
+    this.chunkSize = chunkSize;
+    boxes = new IntBoxes(chunkSize);
+    Chunk<E> c = new Chunk<>(0, chunkSize, null, null);
+    // Start mid-chunk, so that neither end allocates right away
+    headChunk = STM.newRef(c);
+    headIndex = STM.newRef(boxes.of(chunkSize / 2));
+    tailChunk = STM.newRef(c);
+    tailIndex = STM.newRef(boxes.of(chunkSize / 2));
+  }
+
+  @Override
+  public int size() {
+    return STMSupport.atomic(counters, () ->
+      (int) ((tailChunk.get().number - headChunk.get().number) * chunkSize
+             + tailIndex.get() - headIndex.get())
+    );
+  }
+
+  @Override
+  public void addFirst(E elem) {
+    STMSupport.atomic(counters, () -> {
+      Chunk<E> c = headChunk.get();
+      int h = headIndex.get();
+      if (h > 0) {
+        h--;
+      } else {
+        Chunk<E> p = c.prev.get();
+        if (p == null) {
+          p = new Chunk<>(c.number - 1, chunkSize, null, c);
+          c.prev.set(p);
+          STMSupport.resized(counters, 0);
+        }
+        headChunk.set(p);
+        c = p;
+        h = chunkSize - 1;
+      }
+      c.slots.update(h, elem);
+      headIndex.set(boxes.of(h));
+    });
+  }
+
+  @Override
+  public void addLast(E elem) {
+    STMSupport.atomic(counters, () -> {
+      Chunk<E> c = tailChunk.get();
+      int t = tailIndex.get();
+      c.slots.update(t, elem);
+      if (t + 1 < chunkSize) {
+        tailIndex.set(boxes.of(t + 1));
+      } else {
+        Chunk<E> n = c.next.get();
+        if (n == null) {
+          n = new Chunk<>(c.number + 1, chunkSize, c, null);
+          c.next.set(n);
+          STMSupport.resized(counters, 0);
+        }
+        tailChunk.set(n);
+        tailIndex.set(boxes.of(0));
+      }
+    });
+  }
+
+  @Override
+  public E removeFirst() {
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty())
+        STMSupport.retry(counters);
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E removeLast() {
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty())
+        STMSupport.retry(counters);
+
+      return takeLast();
+    });
+  }
+
+  @Override
+  public E pollFirst() {
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty())
+        return null;
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollLast() {
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty())
+        return null;
+
+      return takeLast();
+    });
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (isEmpty()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeLast();
+    });
+  }
+
+  /**
+   * Check if the deque is empty. Must be called inside a transaction.
+   * @return <code>true</code> if both ends are equal.
+   */
+  private boolean isEmpty() {
+    return headChunk.get() == tailChunk.get() && headIndex.get().equals(tailIndex.get());
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeFirst() {
+    Chunk<E> c = headChunk.get();
+    int h = headIndex.get();
+    E elem = c.slots.apply(h);
+    c.slots.update(h, null);
+    if (h + 1 < chunkSize) {
+      headIndex.set(boxes.of(h + 1));
+    } else {
+      // The tail is further on, so the next chunk exists. Keep this
+      // chunk as the spare before the head, and drop older ones.
+      c.prev.set(null);
+      headChunk.set(c.next.get());
+      headIndex.set(boxes.of(0));
+    }
+    return elem;
+  }
+
+  /**
+   * Remove the element at the tail. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeLast() {
+    Chunk<E> c = tailChunk.get();
+    int t = tailIndex.get();
+    if (t > 0) {
+      t--;
+    } else {
+      // The head is further back, so the previous chunk exists. Keep
+      // this chunk as the spare after the tail, and drop newer ones.
+      c.next.set(null);
+      c = c.prev.get();
+      tailChunk.set(c);
+      t = chunkSize - 1;
+    }
+    E elem = c.slots.apply(t);
+    c.slots.update(t, null);
+    tailIndex.set(boxes.of(t));
+    return elem;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BDequeTest {
+    @Override
+    <T> BDeque<T> createBDeque(int capacity) {
+      return new STMChunkedDeque<>(2);
+    }
+  }
+}
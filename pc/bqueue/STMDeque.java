@@ -1,5 +1,7 @@
 package pc.bqueue;
 
+import java.util.concurrent.TimeUnit;
+
 import scala.concurrent.stm.Ref;
 import scala.concurrent.stm.TArray;
 import scala.concurrent.stm.japi.STM;
@@ -9,11 +11,12 @@ import scala.concurrent.stm.japi.STM;
  *
  * @param <E> Type of elements.
  */
-public class STMDeque<E> implements BDeque<E> {
+public class STMDeque<E> implements BDeque<E>, Instrumentable, Transactional {
 
   private final Ref.View<Integer> head;
   private final Ref.View<Integer> tail;
   private final Ref.View<TArray.View<E>> arrayRef;
+  private Counters counters = Counters.DISABLED;
 
   /**
    * Constructor.
@@ -31,14 +34,14 @@ public class STMDeque<E> implements BDeque<E> {
 
   @Override
   public int size() {
-    return STM.atomic(() ->
+    return STMSupport.atomic(counters, () ->
       tail.get() - head.get()
     );
   }
 
   @Override
   public void addFirst(E elem) {
-      STM.atomic(() -> {
+      STMSupport.atomic(counters, () -> {
 
         int p = this.head.transformAndGet(i -> {
 
@@ -71,6 +74,8 @@ public class STMDeque<E> implements BDeque<E> {
           newArray.update(p % newArray.length(), elem);
 
           this.arrayRef.set(newArray);
+
+          STMSupport.resized(counters, tail.get() - p - 1);
         }
 
       });
@@ -78,7 +83,7 @@ public class STMDeque<E> implements BDeque<E> {
 
   @Override
   public void addLast(E elem) {
-    STM.atomic(() -> {
+    STMSupport.atomic(counters, () -> {
 
       int p = this.tail.get();
 
@@ -97,6 +102,8 @@ public class STMDeque<E> implements BDeque<E> {
         newArray.update(p % newArray.length(), elem);
 
         this.arrayRef.set(newArray);
+
+        STMSupport.resized(counters, p - head.get());
       }
 
       STM.increment(this.tail, 1);
@@ -106,7 +113,7 @@ public class STMDeque<E> implements BDeque<E> {
 
   @Override
   public E removeFirst() {
-    return STM.atomic(() -> {
+    return STMSupport.atomic(counters, () -> {
 
         E elem = null;
 
@@ -122,7 +129,7 @@ public class STMDeque<E> implements BDeque<E> {
           this.arrayRef.get().update(pos, null);
 
         } else {
-          STM.retry();
+          STMSupport.retry(counters);
         }
 
         return elem;
@@ -132,7 +139,7 @@ public class STMDeque<E> implements BDeque<E> {
 
   @Override
   public E removeLast() {
-    return STM.atomic(() -> {
+    return STMSupport.atomic(counters, () -> {
 
       E elem = null;
 
@@ -146,7 +153,7 @@ public class STMDeque<E> implements BDeque<E> {
           this.arrayRef.get().update(pos, null);
 
       } else {
-        STM.retry();
+        STMSupport.retry(counters);
       }
 
       STM.increment(this.tail, -1);
@@ -155,6 +162,97 @@ public class STMDeque<E> implements BDeque<E> {
     });
   }
 
+  @Override
+  public E pollFirst() {
+    return STMSupport.atomic(counters, () -> {
+
+        if (head.get() >= tail.get())
+          return null;
+
+        return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+
+        if (head.get() >= tail.get()) {
+          // Blocks like STM.retry(), but only up to the timeout
+          STMSupport.retryFor(counters, nanos);
+          return null;
+        }
+
+        return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollLast() {
+    return STMSupport.atomic(counters, () -> {
+
+        if (head.get() >= tail.get())
+          return null;
+
+        return takeLast();
+    });
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+
+        if (head.get() >= tail.get()) {
+          // Blocks like STM.retry(), but only up to the timeout
+          STMSupport.retryFor(counters, nanos);
+          return null;
+        }
+
+        return takeLast();
+    });
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeFirst() {
+    int pos = head.get() % this.arrayRef.get().length();
+
+    E elem = this.arrayRef.get().apply(pos);
+
+    this.arrayRef.get().update(pos, null);
+
+    STM.increment(head, 1);
+
+    return elem;
+  }
+
+  /**
+   * Remove the element at the tail. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeLast() {
+    int pos = (this.tail.get() - 1) % this.arrayRef.get().length();
+
+    E elem = this.arrayRef.get().apply(pos);
+
+    this.arrayRef.get().update(pos, null);
+
+    STM.increment(this.tail, -1);
+
+    return elem;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
   /**
    * Test instantiation (do not run in cooperative mode).
    */
@@ -0,0 +1,68 @@
+package pc.bqueue;
+
+import scala.reflect.ClassTag$;
+
+/**
+ * STM implementation of queue of <code>int</code> elements.
+ * 
+ * Same design as {@link STMBQueue} (see {@link STMPrimitiveRing}). The
+ * transactional array is created with an <code>Int</code> class tag, so
+ * Scala STM stores the elements in an <code>int[]</code> rather than as
+ * boxed objects. Values still cross the Java / Scala generic boundary as
+ * <code>Integer</code>, so values outside the <code>Integer</code> cache are
+ * boxed when read or written.
+ */
+public class STMIntBQueue implements IntBQueue, Transactional {
+
+  private final STMPrimitiveRing ring;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMIntBQueue(int capacity) {
+    ring = new STMPrimitiveRing(capacity, ClassTag$.MODULE$.Int());
+  }
+
+  @Override
+  public int capacity() {
+    return ring.capacity();
+  }
+
+  @Override
+  public int size() {
+    return ring.size();
+  }
+
+  @Override
+  public void addInt(int elem) {
+    ring.add(elem);
+  }
+
+  @Override
+  public int removeInt() {
+    return (Integer) ring.remove();
+  }
+
+  @Override
+  public boolean offerInt(int elem) {
+    return ring.offer(elem);
+  }
+
+  @Override
+  public int pollInt(int ifEmpty) {
+    Object elem = ring.poll();
+    return elem == null ? ifEmpty : (Integer) elem;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends IntBQueueTest {
+    @Override
+    IntBQueue createIntBQueue(int capacity) {
+      return new STMIntBQueue(capacity);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package pc.bqueue;
+
+import scala.reflect.ClassTag$;
+
+/**
+ * STM implementation of queue of <code>long</code> elements.
+ * 
+ * Same design as {@link STMBQueue} (see {@link STMPrimitiveRing}). The
+ * transactional array is created with a <code>Long</code> class tag, so
+ * Scala STM stores the elements in a <code>long[]</code> rather than as
+ * boxed objects. Values still cross the Java / Scala generic boundary as
+ * <code>Long</code>, so values outside the <code>Long</code> cache are
+ * boxed when read or written.
+ */
+public class STMLongBQueue implements LongBQueue, Transactional {
+
+  private final STMPrimitiveRing ring;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMLongBQueue(int capacity) {
+    ring = new STMPrimitiveRing(capacity, ClassTag$.MODULE$.Long());
+  }
+
+  @Override
+  public int capacity() {
+    return ring.capacity();
+  }
+
+  @Override
+  public int size() {
+    return ring.size();
+  }
+
+  @Override
+  public void addLong(long elem) {
+    ring.add(elem);
+  }
+
+  @Override
+  public long removeLong() {
+    return (Long) ring.remove();
+  }
+
+  @Override
+  public boolean offerLong(long elem) {
+    return ring.offer(elem);
+  }
+
+  @Override
+  public long pollLong(long ifEmpty) {
+    Object elem = ring.poll();
+    return elem == null ? ifEmpty : (Long) elem;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends LongBQueueTest {
+    @Override
+    LongBQueue createLongBQueue(int capacity) {
+      return new STMLongBQueue(capacity);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * STM implementation of queue that does not box its indices.
+ *
+ * Same algorithm as {@link STMBQueue}, but the values of
+ * <code>head</code> and <code>size</code> come from a table of
+ * preallocated boxes (see {@link IntBoxes}), and are updated with plain
+ * reads and writes rather than <code>STM.increment</code>, which
+ * allocates a closure and a box per call. The atomic blocks of
+ * {@link #remove()} and {@link #poll()} are created once.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMPackedBQueue<E> implements BQueue<E>, Instrumentable, Transactional {
+
+  private final Ref.View<Integer> size;
+  private final Ref.View<Integer> head;
+  private final TArray.View<E> array;
+  private final IntBoxes boxes;
+  private final Callable<E> removeBlock;
+  private final Callable<E> pollBlock;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMPackedBQueue(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    boxes = new IntBoxes(capacity + 1);
+    size = STM.newRef(boxes.of(0));
+    head = STM.newRef(boxes.of(0));
+    array = STM.newTArray(capacity);
+    removeBlock = () -> {
+      if (size.get() == 0)
+        STMSupport.retry(counters);
+
+      return take();
+    };
+    pollBlock = () -> {
+      if (size.get() == 0)
+        return null;
+
+      return take();
+    };
+  }
+
+  @Override
+  public int capacity() {
+    return array.length();
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public void add(E elem) {
+    STMSupport.atomic(counters, () -> {
+      if (size.get() == array.length()) {
+        STMSupport.retry(counters);
+      }
+      put(elem);
+    });
+  }
+
+  @Override
+  public E remove() {
+    return STMSupport.atomic(counters, removeBlock);
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == array.length())
+        return false;
+
+      put(elem);
+      return true;
+    });
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == array.length()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return false;
+      }
+
+      put(elem);
+      return true;
+    });
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, pollBlock);
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == 0) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return take();
+    });
+  }
+
+  /**
+   * Add an element at the tail. Must be called inside a transaction,
+   * when the queue is not full.
+   * @param elem Element to add.
+   */
+  private void put(E elem) {
+    int n = size.get();
+    array.update((head.get() + n) % array.length(), elem);
+    size.set(boxes.of(n + 1));
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the queue is not empty.
+   * @return The element removed.
+   */
+  private E take() {
+    int h = head.get();
+    E elem = array.apply(h);
+    head.set(boxes.of((h + 1) % array.length()));
+    size.set(boxes.of(size.get() - 1));
+    return elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    int i = 0;
+    while (i < batch.length) {
+      // As in STMBQueue, each transaction adds as many elements as fit
+      int from = i;
+      i += STMSupport.atomic(counters, () -> {
+        int n = size.get();
+        int free = array.length() - n;
+        if (free == 0) {
+          STMSupport.retry(counters);
+        }
+        int k = Math.min(free, batch.length - from);
+        int tail = head.get() + n;
+        for (int j = 0; j < k; j++) {
+          array.update((tail + j) % array.length(), (E) batch[from + j]);
+        }
+        size.set(boxes.of(n + k));
+        return k;
+      });
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    // Elements are handed to dst only after the transaction commits
+    Object[] taken = STMSupport.atomic(counters, () -> {
+      int n = size.get();
+      if (n == 0)
+        STMSupport.retry(counters);
+
+      int k = Math.min(n, max);
+      Object[] out = new Object[k];
+      int h = head.get();
+      for (int j = 0; j < k; j++) {
+        out[j] = array.apply((h + j) % array.length());
+      }
+      head.set(boxes.of((h + k) % array.length()));
+      size.set(boxes.of(n - k));
+      return out;
+    });
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new STMPackedBQueue<>(capacity);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * Unbounded STM implementation of queue that does not box its indices.
+ *
+ * Same algorithm as {@link STMBQueueU}, with the changes of
+ * {@link STMPackedBQueue}: indices are taken from a table of
+ * preallocated boxes, which grows along with the array, and are
+ * updated without <code>STM.increment</code>.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMPackedBQueueU<E> implements BQueue<E>, Instrumentable, Transactional {
+
+  private final Ref.View<Integer> size;
+  private final Ref.View<Integer> head;
+  private final Ref.View<TArray.View<E>> arrayRef;
+  private final IntBoxes boxes;
+  private final Callable<E> removeBlock;
+  private final Callable<E> pollBlock;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMPackedBQueueU(int initialCapacity) {
+    if (initialCapacity <= 0)
+      throw new IllegalArgumentException();
+    boxes = new IntBoxes(initialCapacity + 1);
+    size = STM.newRef(boxes.of(0));
+    head = STM.newRef(boxes.of(0));
+    arrayRef = STM.newRef(STM.newTArray(initialCapacity));
+    removeBlock = () -> {
+      if (size.get() == 0)
+        STMSupport.retry(counters);
+
+      return take();
+    };
+    pollBlock = () -> {
+      if (size.get() == 0)
+        return null;
+
+      return take();
+    };
+  }
+
+  @Override
+  public int capacity() {
+    return UNBOUNDED;
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public void add(E elem) {
+    STMSupport.atomic(counters, () -> {
+      int n = size.get();
+      TArray.View<E> array = ensureCapacity(n + 1);
+      array.update((head.get() + n) % array.length(), elem);
+      size.set(boxes.of(n + 1));
+    });
+  }
+
+  /**
+   * Grow the array if needed. Must be called inside a transaction.
+   * @param needed Number of elements the array must hold.
+   * @return The (possibly new) array.
+   */
+  private TArray.View<E> ensureCapacity(int needed) {
+    TArray.View<E> array = arrayRef.get();
+    if (needed <= array.length()) {
+      return array;
+    }
+    int newLength = array.length() * 2;
+    while (newLength < needed) {
+      newLength *= 2;
+    }
+    TArray.View<E> newArray = STM.newTArray(newLength);
+    int n = size.get();
+    int h = head.get();
+    for (int i = 0; i < n; i++) {
+      newArray.update(i, array.apply((h + i) % array.length()));
+    }
+    head.set(boxes.of(0));
+    arrayRef.set(newArray);
+    STMSupport.resized(counters, n);
+    return newArray;
+  }
+
+  @Override
+  public E remove() {
+    return STMSupport.atomic(counters, removeBlock);
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, pollBlock);
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (size.get() == 0) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return take();
+    });
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the queue is not empty.
+   * @return The element removed.
+   */
+  private E take() {
+    TArray.View<E> array = arrayRef.get();
+    int h = head.get();
+    E elem = array.apply(h);
+    head.set(boxes.of((h + 1) % array.length()));
+    size.set(boxes.of(size.get() - 1));
+    return elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    if (batch.length == 0)
+      return;
+
+    STMSupport.atomic(counters, () -> {
+      int n = size.get();
+      // Grow once for the whole batch
+      TArray.View<E> array = ensureCapacity(n + batch.length);
+      int tail = head.get() + n;
+      for (int j = 0; j < batch.length; j++) {
+        array.update((tail + j) % array.length(), (E) batch[j]);
+      }
+      size.set(boxes.of(n + batch.length));
+    });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+
+    // Elements are handed to dst only after the transaction commits
+    Object[] taken = STMSupport.atomic(counters, () -> {
+      int n = size.get();
+      if (n == 0)
+        STMSupport.retry(counters);
+
+      TArray.View<E> array = arrayRef.get();
+      int k = Math.min(n, max);
+      Object[] out = new Object[k];
+      int h = head.get();
+      for (int j = 0; j < k; j++) {
+        out[j] = array.apply((h + j) % array.length());
+      }
+      head.set(boxes.of((h + k) % array.length()));
+      size.set(boxes.of(n - k));
+      return out;
+    });
+
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int initialCapacity) {
+      return new STMPackedBQueueU<>(initialCapacity);
+    }
+  }
+}
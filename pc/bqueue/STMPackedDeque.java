@@ -0,0 +1,229 @@
+package pc.bqueue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * STM implementation of deque that does not box its indices.
+ *
+ * Same algorithm as {@link STMDeque}, with the changes of
+ * {@link STMPackedBQueue}: indices are taken from a table of
+ * preallocated boxes, which grows along with the array, and are
+ * updated with plain reads and writes rather than
+ * <code>STM.increment</code> and <code>transformAndGet</code>.
+ * Unlike {@link STMDeque}, removals at the head move the origin back
+ * once the head passes the array length, so that indices stay bounded.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMPackedDeque<E> implements BDeque<E>, Instrumentable, Transactional {
+
+  private final Ref.View<Integer> head;
+  private final Ref.View<Integer> tail;
+  private final Ref.View<TArray.View<E>> arrayRef;
+  private final IntBoxes boxes;
+  private final Callable<E> removeFirstBlock;
+  private final Callable<E> removeLastBlock;
+  private final Callable<E> pollFirstBlock;
+  private final Callable<E> pollLastBlock;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   * @param capacity Initial deque capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMPackedDeque(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    // Indices range up to twice the array length (see addFirst)
+    boxes = new IntBoxes(2 * capacity + 1);
+    head = STM.newRef(boxes.of(0));
+    tail = STM.newRef(boxes.of(0));
+    arrayRef = STM.newRef(STM.newTArray(capacity));
+    removeFirstBlock = () -> {
+      if (head.get() >= tail.get())
+        STMSupport.retry(counters);
+
+      return takeFirst();
+    };
+    removeLastBlock = () -> {
+      if (head.get() >= tail.get())
+        STMSupport.retry(counters);
+
+      return takeLast();
+    };
+    pollFirstBlock = () -> {
+      if (head.get() >= tail.get())
+        return null;
+
+      return takeFirst();
+    };
+    pollLastBlock = () -> {
+      if (head.get() >= tail.get())
+        return null;
+
+      return takeLast();
+    };
+  }
+
+  @Override
+  public int size() {
+    return STMSupport.atomic(counters, () ->
+      tail.get() - head.get()
+    );
+  }
+
+  @Override
+  public void addFirst(E elem) {
+    STMSupport.atomic(counters, () -> {
+      TArray.View<E> array = arrayRef.get();
+      int p = head.get();
+      int t = tail.get();
+      if (p <= 0) {
+        // Move the origin by the array length, as in STMDeque
+        p = array.length();
+        t += array.length();
+      }
+      p--;
+      if (t - p < array.length()) {
+        array.update(p % array.length(), elem);
+      } else {
+        TArray.View<E> newArray = STM.newTArray(array.length() * 2);
+        for (int i = p + 1; i < t; i++) {
+          newArray.update(i % newArray.length(), array.apply(i % array.length()));
+        }
+        newArray.update(p % newArray.length(), elem);
+        arrayRef.set(newArray);
+        STMSupport.resized(counters, t - p - 1);
+      }
+      head.set(boxes.of(p));
+      tail.set(boxes.of(t));
+    });
+  }
+
+  @Override
+  public void addLast(E elem) {
+    STMSupport.atomic(counters, () -> {
+      TArray.View<E> array = arrayRef.get();
+      int h = head.get();
+      int p = tail.get();
+      if (p - h < array.length()) {
+        array.update(p % array.length(), elem);
+      } else {
+        TArray.View<E> newArray = STM.newTArray(array.length() * 2);
+        for (int i = h; i < p; i++) {
+          newArray.update(i % newArray.length(), array.apply(i % array.length()));
+        }
+        newArray.update(p % newArray.length(), elem);
+        arrayRef.set(newArray);
+        STMSupport.resized(counters, p - h);
+      }
+      tail.set(boxes.of(p + 1));
+    });
+  }
+
+  @Override
+  public E removeFirst() {
+    return STMSupport.atomic(counters, removeFirstBlock);
+  }
+
+  @Override
+  public E removeLast() {
+    return STMSupport.atomic(counters, removeLastBlock);
+  }
+
+  @Override
+  public E pollFirst() {
+    return STMSupport.atomic(counters, pollFirstBlock);
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (head.get() >= tail.get()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollLast() {
+    return STMSupport.atomic(counters, pollLastBlock);
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (head.get() >= tail.get()) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeLast();
+    });
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeFirst() {
+    TArray.View<E> array = arrayRef.get();
+    int h = head.get();
+    int pos = h % array.length();
+    E elem = array.apply(pos);
+    array.update(pos, null);
+    if (h + 1 < array.length()) {
+      head.set(boxes.of(h + 1));
+    } else {
+      // Move the origin back, so that indices (and boxes) stay below
+      // twice the array length
+      head.set(boxes.of(h + 1 - array.length()));
+      tail.set(boxes.of(tail.get() - array.length()));
+    }
+    return elem;
+  }
+
+  /**
+   * Remove the element at the tail. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeLast() {
+    TArray.View<E> array = arrayRef.get();
+    int p = tail.get() - 1;
+    int pos = p % array.length();
+    E elem = array.apply(pos);
+    array.update(pos, null);
+    tail.set(boxes.of(p));
+    return elem;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BDequeTest {
+    @Override
+    <T> BDeque<T> createBDeque(int capacity) {
+      return new STMPackedDeque<>(capacity);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package pc.bqueue;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.TArray$;
+import scala.concurrent.stm.japi.STM;
+import scala.reflect.ClassTag;
+
+/**
+ * Transactional ring of primitive elements, shared by {@link STMIntBQueue}
+ * and {@link STMLongBQueue}.
+ *
+ * Same design as {@link STMBQueue}. The transactional array is created
+ * with the class tag of the primitive type, so Scala STM stores the
+ * elements unboxed, but they cross the Java / Scala generic boundary as
+ * <code>Object</code>: callers box elements to add and unbox those
+ * removed.
+ */
+final class STMPrimitiveRing {
+
+  private final Ref.View<Integer> size;
+  private final Ref.View<Integer> head;
+  private final TArray.View<Object> array;
+
+  /**
+   * Constructor.
+   * @param capacity Ring capacity.
+   * @param tag Class tag of the elements.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  STMPrimitiveRing(int capacity, ClassTag<Object> tag) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    size = STM.newRef(0);
+    head = STM.newRef(0);
+    array = TArray$.MODULE$.ofDim(capacity, tag).single();
+  }
+
+  int capacity() {
+    return array.length();
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  /**
+   * Add an element, blocking while the ring is full.
+   * @param elem Element to add.
+   */
+  void add(Object elem) {
+    STM.atomic(() -> {
+      if (size.get() == array.length()) {
+        STM.retry();
+      }
+      put(elem);
+    });
+  }
+
+  /**
+   * Remove an element, blocking while the ring is empty.
+   * @return The element removed.
+   */
+  Object remove() {
+    return STM.atomic(() -> {
+      if (size.get() == 0)
+        STM.retry();
+
+      return take();
+    });
+  }
+
+  /**
+   * Add an element if the ring is not full.
+   * @param elem Element to add.
+   * @return <code>false</code> if the ring was full.
+   */
+  boolean offer(Object elem) {
+    return STM.atomic(() -> {
+      if (size.get() == array.length())
+        return false;
+
+      put(elem);
+      return true;
+    });
+  }
+
+  /**
+   * Remove an element if the ring is not empty.
+   * @return The element removed, or <code>null</code> if the ring was empty.
+   */
+  Object poll() {
+    return STM.atomic(() -> {
+      if (size.get() == 0)
+        return null;
+
+      return take();
+    });
+  }
+
+  /**
+   * Add an element at the tail. Must be called inside a transaction,
+   * when the ring is not full.
+   * @param elem Element to add.
+   */
+  private void put(Object elem) {
+    array.update((head.get() + size.get()) % array.length(), elem);
+    STM.increment(size, 1);
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the ring is not empty.
+   * @return The element removed.
+   */
+  private Object take() {
+    Object elem = array.apply(head.get());
+    head.set((head.get() + 1) % array.length());
+    STM.increment(size, -1);
+    return elem;
+  }
+}
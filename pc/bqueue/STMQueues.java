@@ -0,0 +1,176 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * Atomic compositions of operations on {@link Transactional} queues.
+ *
+ * Each method runs as a single transaction, with a single commit, instead
+ * of one transaction per element. Blocking methods wait until the whole
+ * composition can proceed, e.g. {@link #transfer} waits until the source
+ * holds enough elements <em>and</em> the destination has enough space.
+ */
+public final class STMQueues {
+
+  /**
+   * Run a block atomically. Operations of {@link Transactional} structures
+   * called by the block are part of its transaction.
+   * @param block Atomic block.
+   */
+  public static void atomic(Runnable block) {
+    STM.atomic(block);
+  }
+
+  /**
+   * Run a block atomically. Operations of {@link Transactional} structures
+   * called by the block are part of its transaction.
+   * @param <T> Type of result.
+   * @param block Atomic block.
+   * @return Result of the block.
+   */
+  public static <T> T atomic(Callable<T> block) {
+    return STM.atomic(block);
+  }
+
+  /**
+   * Move elements from one queue to another atomically.
+   *
+   * The operation blocks until <code>n</code> elements can be removed
+   * from <code>from</code> and added to <code>to</code>, and then moves
+   * them in order.
+   *
+   * @param <E> Type of elements.
+   * @param from Source queue.
+   * @param to Destination queue.
+   * @param n Number of elements to move.
+   * @throws IllegalArgumentException if a queue is not {@link Transactional},
+   *         if {@code n <= 0}, or if <code>n</code> exceeds the capacity of
+   *         a bounded queue.
+   */
+  public static <E> void transfer(BQueue<? extends E> from, BQueue<? super E> to, int n) {
+    checkTransactional(from);
+    checkTransactional(to);
+    if (n <= 0 || !fits(from, n) || !fits(to, n)) {
+      throw new IllegalArgumentException();
+    }
+    STM.atomic(() -> {
+      for (int i = 0; i < n; i++) {
+        to.add(from.remove());
+      }
+    });
+  }
+
+  /**
+   * Remove an element from the first non-empty queue among several,
+   * in the given order.
+   *
+   * The operation blocks while all queues are empty.
+   *
+   * @param <E> Type of elements.
+   * @param queues Queues.
+   * @return Element removed.
+   * @throws IllegalArgumentException if there are no queues, or a queue
+   *         is not {@link Transactional}.
+   */
+  @SafeVarargs
+  @SuppressWarnings("varargs") // queues is only read, and never escapes
+  public static <E> E select(BQueue<? extends E>... queues) {
+    checkSelect(queues);
+    return STM.atomic(() -> {
+      E elem = pollFirst(queues);
+      if (elem == null) {
+        STM.retry();
+      }
+      return elem;
+    });
+  }
+
+  /**
+   * Remove an element from the first non-empty queue among several,
+   * in the given order, waiting up to the given time while all are empty.
+   *
+   * @param <E> Type of elements.
+   * @param timeout Maximum time to wait.
+   * @param unit Time unit of <code>timeout</code>.
+   * @param queues Queues.
+   * @return Element removed, or <code>null</code> if all queues were
+   *         still empty when the timeout elapsed.
+   * @throws IllegalArgumentException if there are no queues, or a queue
+   *         is not {@link Transactional}.
+   */
+  @SafeVarargs
+  @SuppressWarnings("varargs") // queues is only read, and never escapes
+  public static <E> E select(long timeout, TimeUnit unit, BQueue<? extends E>... queues) {
+    checkSelect(queues);
+    long nanos = unit.toNanos(timeout);
+    return STM.atomic(() -> {
+      E elem = pollFirst(queues);
+      if (elem == null) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(nanos);
+      }
+      return elem;
+    });
+  }
+
+  /**
+   * Add all elements of a collection to a queue in one transaction.
+   *
+   * Unlike {@link BQueue#addAll} on a bounded queue, which may add a
+   * batch in several steps, either all elements are added at once or
+   * none is: the operation blocks until the queue has space for all.
+   *
+   * @param <E> Type of elements.
+   * @param queue Queue.
+   * @param elems Elements to add.
+   * @throws IllegalArgumentException if the queue is not {@link Transactional},
+   *         or the collection exceeds the capacity of a bounded queue.
+   */
+  public static <E> void addAll(BQueue<? super E> queue, Collection<? extends E> elems) {
+    checkTransactional(queue);
+    if (!fits(queue, elems.size())) {
+      throw new IllegalArgumentException();
+    }
+    STM.atomic(() -> {
+      for (E elem : elems) {
+        queue.add(elem);
+      }
+    });
+  }
+
+  private static <E> E pollFirst(BQueue<? extends E>[] queues) {
+    for (BQueue<? extends E> q : queues) {
+      E elem = q.poll();
+      if (elem != null) {
+        return elem;
+      }
+    }
+    return null;
+  }
+
+  private static void checkSelect(BQueue<?>[] queues) {
+    if (queues.length == 0) {
+      throw new IllegalArgumentException();
+    }
+    for (BQueue<?> q : queues) {
+      checkTransactional(q);
+    }
+  }
+
+  private static void checkTransactional(Object q) {
+    if (!(q instanceof Transactional)) {
+      throw new IllegalArgumentException("Not an STM structure: " + q.getClass().getName());
+    }
+  }
+
+  private static boolean fits(BQueue<?> q, int n) {
+    return !q.hasFixedCapacity() || n <= q.capacity();
+  }
+
+  // Private constructor (prevent undesirable instantiation).
+  private STMQueues() { }
+}
@@ -0,0 +1,133 @@
+package pc.bqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cooperari.CSystem;
+import org.cooperari.config.CMaxTrials;
+import org.cooperari.config.CRaceDetection;
+import org.cooperari.config.CScheduling;
+import org.cooperari.core.scheduling.CProgramStateFactory;
+import org.cooperari.core.scheduling.CSchedulerFactory;
+import org.cooperari.junit.CJUnitRunner;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for {@link STMQueues} (do not run in cooperative mode).
+ */
+@SuppressWarnings("javadoc")
+@RunWith(CJUnitRunner.class)
+@CMaxTrials(25)
+@CRaceDetection(false)
+@CScheduling(schedulerFactory=CSchedulerFactory.MEMINI, stateFactory=CProgramStateFactory.RAW)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class STMQueuesTest {
+
+  @Test
+  public void test1() {
+    // transfer waits for two elements in the source and two free
+    // slots in the destination
+    BQueue<Integer> from = new STMBQueue<>(4);
+    BQueue<Integer> to = new STMBQueue<>(2);
+    to.add(0);
+    AtomicInteger a = new AtomicInteger(-1);
+    CSystem.forkAndJoin(
+        () -> STMQueues.transfer(from, to, 2),
+        () -> { from.add(1); from.add(2); },
+        () -> a.set(to.remove())
+        );
+    assertEquals(0, a.get());
+    assertEquals(0, from.size());
+    assertEquals(2, to.size());
+    assertEquals(1, (int) to.remove());
+    assertEquals(2, (int) to.remove());
+  }
+
+  @Test
+  public void test2() {
+    // select wakes up when any queue becomes non-empty
+    BQueue<Integer> q1 = new STMBQueue<>(2);
+    BQueue<Integer> q2 = new STMBQueueU<>(2);
+    AtomicInteger a = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> a.set(STMQueues.select(q1, q2)),
+        () -> q2.add(7)
+        );
+    assertEquals(7, a.get());
+    assertEquals(0, q1.size() + q2.size());
+    // queues are tried in the given order
+    q2.add(2);
+    q1.add(1);
+    assertEquals(1, (int) STMQueues.select(q1, q2));
+    assertEquals(2, (int) STMQueues.select(q1, q2));
+  }
+
+  @Test
+  public void test3() {
+    BQueue<Integer> q1 = new STMBQueue<>(2);
+    BQueue<Integer> q2 = new STMPackedBQueue<>(2);
+    assertNull(STMQueues.select(1, TimeUnit.MILLISECONDS, q1, q2));
+    q2.add(3);
+    assertEquals(3, (int) STMQueues.select(1, TimeUnit.MILLISECONDS, q1, q2));
+    assertNull(STMQueues.select(1, TimeUnit.MILLISECONDS, q1, q2));
+  }
+
+  @Test
+  public void test4() {
+    // addAll waits for space for the whole batch, and adds it at once
+    BQueue<Integer> q = new STMBQueue<>(3);
+    q.add(0);
+    AtomicInteger a = new AtomicInteger(-1);
+    AtomicInteger b = new AtomicInteger(-1);
+    CSystem.forkAndJoin(
+        () -> STMQueues.addAll(q, Arrays.asList(1, 2, 3)),
+        () -> { a.set(q.remove()); b.set(q.size()); }
+        );
+    assertEquals(0, a.get());
+    assertTrue(b.get() == 0 || b.get() == 3);
+    List<Integer> l = new ArrayList<>();
+    assertEquals(3, q.drainTo(l, 5));
+    assertEquals(Arrays.asList(1, 2, 3), l);
+    STMQueues.addAll(q, Collections.<Integer>emptyList());
+    assertEquals(0, q.size());
+  }
+
+  @Test
+  public void test5() {
+    BQueue<Integer> stm = new STMBQueue<>(2);
+    BQueue<Integer> other = new MBQueue<>(2);
+    stm.add(1);
+    assertIllegal(() -> STMQueues.transfer(stm, other, 1));
+    assertIllegal(() -> STMQueues.transfer(other, stm, 1));
+    assertIllegal(() -> STMQueues.transfer(stm, new STMBQueueU<>(2), 0));
+    assertIllegal(() -> STMQueues.transfer(stm, new STMBQueueU<>(2), 3));
+    assertIllegal(() -> STMQueues.transfer(new STMBQueueU<Integer>(2), stm, 3));
+    assertIllegal(() -> STMQueues.select());
+    assertIllegal(() -> STMQueues.select(stm, other));
+    assertIllegal(() -> STMQueues.select(1, TimeUnit.MILLISECONDS));
+    assertIllegal(() -> STMQueues.select(1, TimeUnit.MILLISECONDS, other));
+    assertIllegal(() -> STMQueues.addAll(other, Arrays.asList(1)));
+    assertIllegal(() -> STMQueues.addAll(stm, Arrays.asList(1, 2, 3)));
+    // nothing was moved or added
+    assertEquals(1, stm.size());
+    assertEquals(0, other.size());
+  }
+
+  private static void assertIllegal(Runnable r) {
+    try {
+      r.run();
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
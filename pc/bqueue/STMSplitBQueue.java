@@ -0,0 +1,270 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.TArray;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * STM implementation of queue with split head and tail references.
+ *
+ * In {@link STMBQueue} every operation reads and writes the shared
+ * <code>size</code> reference, so every producer transaction conflicts
+ * with every consumer transaction. Here producers only write
+ * <code>tail</code> and consumers only write <code>head</code>.
+ * To check for space, producers use their own (possibly stale) copy
+ * of <code>head</code>, and read the real one only when the copy says
+ * the queue is full; consumers do the same with <code>tail</code> when
+ * their copy says the queue is empty. Since copies may only lag behind,
+ * a stale copy never lets an operation go ahead wrongly. Producers and
+ * consumers then conflict only around a full or empty queue.
+ *
+ * Positions are counted with <code>long</code> values that never wrap
+ * in practice.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMSplitBQueue<E> implements BQueue<E>, Instrumentable, Transactional {
+
+  private final Ref.View<Long> head;
+  private final Ref.View<Long> tail;
+  // Copy of tail, written by consumers only.
+  private final Ref.View<Long> tailCopy;
+  // Copy of head, written by producers only.
+  private final Ref.View<Long> headCopy;
+  private final TArray.View<E> array;
+  private final int capacity;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  public STMSplitBQueue(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    this.capacity = capacity;
+    head = STM.newRef(0L);
+    tail = STM.newRef(0L);
+    tailCopy = STM.newRef(0L);
+    headCopy = STM.newRef(0L);
+    array = STM.newTArray(capacity);
+  }
+
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+
+  @Override
+  public int size() {
+    return STMSupport.atomic(counters, () -> (int) (tail.get() - head.get()));
+  }
+
+  @Override
+  public void add(E elem) {
+    STMSupport.atomic(counters, () -> {
+      long t = tail.get();
+      if (space(t, 1) == 0) {
+        STMSupport.retry(counters);
+      }
+      put(t, elem);
+    });
+  }
+
+  @Override
+  public E remove() {
+    return STMSupport.atomic(counters, () -> {
+      long h = head.get();
+      if (available(h, 1) == 0) {
+        STMSupport.retry(counters);
+      }
+      return take(h);
+    });
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    return STMSupport.atomic(counters, () -> {
+      long t = tail.get();
+      if (space(t, 1) == 0)
+        return false;
+
+      put(t, elem);
+      return true;
+    });
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      long t = tail.get();
+      if (space(t, 1) == 0) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return false;
+      }
+
+      put(t, elem);
+      return true;
+    });
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, () -> {
+      long h = head.get();
+      if (available(h, 1) == 0)
+        return null;
+
+      return take(h);
+    });
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      long h = head.get();
+      if (available(h, 1) == 0) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return take(h);
+    });
+  }
+
+  /**
+   * Get the free space seen by a producer. Must be called inside a
+   * transaction. The real head is only read (and the producers' copy
+   * refreshed) if the copy shows less than <code>wanted</code> free slots.
+   * @param t Current tail.
+   * @param wanted Number of slots the caller would like.
+   * @return Number of free slots.
+   */
+  private int space(long t, int wanted) {
+    int free = capacity - (int) (t - headCopy.get());
+    if (free < wanted) {
+      long h = head.get();
+      headCopy.set(h);
+      free = capacity - (int) (t - h);
+    }
+    return free;
+  }
+
+  /**
+   * Get the number of elements seen by a consumer. Must be called inside
+   * a transaction. The real tail is only read (and the consumers' copy
+   * refreshed) if the copy shows less than <code>wanted</code> elements.
+   * @param h Current head.
+   * @param wanted Number of elements the caller would like.
+   * @return Number of elements.
+   */
+  private int available(long h, int wanted) {
+    int n = (int) (tailCopy.get() - h);
+    if (n < wanted) {
+      long t = tail.get();
+      tailCopy.set(t);
+      n = (int) (t - h);
+    }
+    return n;
+  }
+
+  /**
+   * Add an element at the tail. Must be called inside a transaction,
+   * when the queue is not full.
+   * @param t Current tail.
+   * @param elem Element to add.
+   */
+  private void put(long t, E elem) {
+    array.update((int) (t % capacity), elem);
+    tail.set(t + 1);
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the queue is not empty.
+   * @param h Current head.
+   * @return The element removed.
+   */
+  private E take(long h) {
+    int pos = (int) (h % capacity);
+    E elem = array.apply(pos);
+    array.update(pos, null);
+    head.set(h + 1);
+    return elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Collection<? extends E> elems) {
+    Object[] batch = elems.toArray();
+    int i = 0;
+    while (i < batch.length) {
+      // As in STMBQueue, each transaction adds as many elements as fit
+      int from = i;
+      i += STMSupport.atomic(counters, () -> {
+        long t = tail.get();
+        int free = space(t, batch.length - from);
+        if (free == 0) {
+          STMSupport.retry(counters);
+        }
+        int k = Math.min(free, batch.length - from);
+        for (int j = 0; j < k; j++) {
+          array.update((int) ((t + j) % capacity), (E) batch[from + j]);
+        }
+        tail.set(t + k);
+        return k;
+      });
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    // Elements are handed to dst only after the transaction commits
+    Object[] taken = STMSupport.atomic(counters, () -> {
+      long h = head.get();
+      int n = available(h, max);
+      if (n == 0)
+        STMSupport.retry(counters);
+
+      int k = Math.min(n, max);
+      Object[] out = new Object[k];
+      for (int j = 0; j < k; j++) {
+        int pos = (int) ((h + j) % capacity);
+        out[j] = array.apply(pos);
+        array.update(pos, null);
+      }
+      head.set(h + k);
+      return out;
+    });
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new STMSplitBQueue<>(capacity);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package pc.bqueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * Unbounded STM implementation of queue with split head and tail references.
+ *
+ * Unlike {@link STMBQueueU}, elements are kept in a linked list that
+ * starts with a dummy node: producers only touch the <code>tail</code>
+ * reference and the link of the last node, consumers only the
+ * <code>head</code> reference and the link of the dummy node. The two
+ * meet only when the queue is empty, so producers and consumers do not
+ * conflict otherwise, and no resize ever copies the contents.
+ *
+ * Each node records its position in the queue, so that the size is
+ * the difference between the positions of the last and dummy nodes.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMSplitBQueueU<E> implements BQueue<E>, Instrumentable, Transactional {
+
+  private static final class Node<E> {
+    final E elem;
+    final long position;
+    final Ref.View<Node<E>> next = STM.newRef(null);
+
+    Node(E elem, long position) {
+      this.elem = elem;
+      this.position = position;
+    }
+  }
+
+  private final Ref.View<Node<E>> head;
+  private final Ref.View<Node<E>> tail;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   */
+  public STMSplitBQueueU() {
+    Node<E> dummy = new Node<>(null, 0);
+    head = STM.newRef(dummy);
+    tail = STM.newRef(dummy);
+  }
+
+  @Override
+  public int capacity() {
+    return UNBOUNDED;
+  }
+
+  @Override
+  public int size() {
+    return STMSupport.atomic(counters, () ->
+      (int) (tail.get().position - head.get().position)
+    );
+  }
+
+  @Override
+  public void add(E elem) {
+    STMSupport.atomic(counters, () -> {
+      Node<E> last = tail.get();
+      Node<E> node = new Node<>(elem, last.position + 1);
+      last.next.set(node);
+      tail.set(node);
+    });
+  }
+
+  @Override
+  public E remove() {
+    return STMSupport.atomic(counters, () -> {
+      Node<E> first = head.get().next.get();
+      if (first == null)
+        STMSupport.retry(counters);
+
+      head.set(first);
+      return first.elem;
+    });
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    // The queue never fills up, so there is never a reason to wait
+    add(elem);
+    return true;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    return offer(elem);
+  }
+
+  @Override
+  public E poll() {
+    return STMSupport.atomic(counters, () -> {
+      Node<E> first = head.get().next.get();
+      if (first == null)
+        return null;
+
+      head.set(first);
+      return first.elem;
+    });
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      Node<E> first = head.get().next.get();
+      if (first == null) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      head.set(first);
+      return first.elem;
+    });
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    if (elems.isEmpty())
+      return;
+
+    STMSupport.atomic(counters, () -> {
+      Node<E> last = tail.get();
+      for (E elem : elems) {
+        Node<E> node = new Node<>(elem, last.position + 1);
+        last.next.set(node);
+        last = node;
+      }
+      tail.set(last);
+    });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+
+    // Elements are handed to dst only after the transaction commits
+    Object[] taken = STMSupport.atomic(counters, () -> {
+      Node<E> h = head.get();
+      if (h.next.get() == null)
+        STMSupport.retry(counters);
+
+      // Follow the links rather than read the tail, which producers write
+      List<Object> out = new ArrayList<>();
+      Node<E> n;
+      while (out.size() < max && (n = h.next.get()) != null) {
+        out.add(n.elem);
+        h = n;
+      }
+      head.set(h);
+      return out.toArray();
+    });
+
+    for (Object elem : taken) {
+      dst.add((E) elem);
+    }
+
+    return taken.length;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int initialCapacity) {
+      return new STMSplitBQueueU<>();
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package pc.bqueue;
+
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.Ref;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * STM implementation of deque with split ends.
+ *
+ * In {@link STMDeque} operations at either end read both
+ * <code>head</code> and <code>tail</code>, so operations at opposite
+ * ends conflict. Here elements are kept in a doubly-linked list between
+ * two sentinel nodes, and operations at one end only touch the sentinel
+ * of that end and its neighbouring nodes. Operations at opposite ends
+ * therefore only conflict while the deque holds fewer than three
+ * elements.
+ *
+ * Each end also keeps its own count of elements added minus elements
+ * removed there, so that the size is their sum.
+ *
+ * @param <E> Type of elements.
+ */
+public class STMSplitDeque<E> implements BDeque<E>, Instrumentable, Transactional {
+
+  private static final class Node<E> {
+    final E elem;
+    final Ref.View<Node<E>> prev;
+    final Ref.View<Node<E>> next;
+
+    Node(E elem, Node<E> prev, Node<E> next) {
+      this.elem = elem;
+      this.prev = STM.newRef(prev);
+      this.next = STM.newRef(next);
+    }
+  }
+
+  private final Node<E> first;
+  private final Node<E> last;
+  private final Ref.View<Integer> firstCount;
+  private final Ref.View<Integer> lastCount;
+  private Counters counters = Counters.DISABLED;
+
+  /**
+   * Constructor.
+   */
+  public STMSplitDeque() {
+    first = new Node<>(null, null, null);
+    last = new Node<>(null, first, null);
+    first.next.set(last);
+    firstCount = STM.newRef(0);
+    lastCount = STM.newRef(0);
+  }
+
+  @Override
+  public int size() {
+    return STMSupport.atomic(counters, () ->
+      firstCount.get() + lastCount.get()
+    );
+  }
+
+  @Override
+  public void addFirst(E elem) {
+    STMSupport.atomic(counters, () -> {
+      Node<E> next = first.next.get();
+      Node<E> node = new Node<>(elem, first, next);
+      first.next.set(node);
+      next.prev.set(node);
+      STM.increment(firstCount, 1);
+    });
+  }
+
+  @Override
+  public void addLast(E elem) {
+    STMSupport.atomic(counters, () -> {
+      Node<E> prev = last.prev.get();
+      Node<E> node = new Node<>(elem, prev, last);
+      last.prev.set(node);
+      prev.next.set(node);
+      STM.increment(lastCount, 1);
+    });
+  }
+
+  @Override
+  public E removeFirst() {
+    return STMSupport.atomic(counters, () -> {
+      if (first.next.get() == last)
+        STMSupport.retry(counters);
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E removeLast() {
+    return STMSupport.atomic(counters, () -> {
+      if (last.prev.get() == first)
+        STMSupport.retry(counters);
+
+      return takeLast();
+    });
+  }
+
+  @Override
+  public E pollFirst() {
+    return STMSupport.atomic(counters, () -> {
+      if (first.next.get() == last)
+        return null;
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollFirst(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (first.next.get() == last) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeFirst();
+    });
+  }
+
+  @Override
+  public E pollLast() {
+    return STMSupport.atomic(counters, () -> {
+      if (last.prev.get() == first)
+        return null;
+
+      return takeLast();
+    });
+  }
+
+  @Override
+  public E pollLast(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    return STMSupport.atomic(counters, () -> {
+      if (last.prev.get() == first) {
+        // Blocks like STM.retry(), but only up to the timeout
+        STMSupport.retryFor(counters, nanos);
+        return null;
+      }
+
+      return takeLast();
+    });
+  }
+
+  /**
+   * Remove the element at the head. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeFirst() {
+    Node<E> node = first.next.get();
+    Node<E> next = node.next.get();
+    first.next.set(next);
+    next.prev.set(first);
+    STM.increment(firstCount, -1);
+    return node.elem;
+  }
+
+  /**
+   * Remove the element at the tail. Must be called inside a transaction,
+   * when the deque is not empty.
+   * @return The element removed.
+   */
+  private E takeLast() {
+    Node<E> node = last.prev.get();
+    Node<E> prev = node.prev.get();
+    last.prev.set(prev);
+    prev.next.set(last);
+    STM.increment(lastCount, -1);
+    return node.elem;
+  }
+
+  @Override
+  public void setCounters(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Test instantiation (do not run in cooperative mode).
+   */
+  public static final class Test extends BDequeTest {
+    @Override
+    <T> BDeque<T> createBDeque(int capacity) {
+      return new STMSplitDeque<>();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package pc.bqueue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.stm.InTxn;
+import scala.concurrent.stm.Txn;
+import scala.concurrent.stm.TxnUnknown$;
+import scala.concurrent.stm.japi.STM;
+
+/**
+ * Helpers for STM operations not exposed by the Java API of Scala STM.
+ */
+final class STMSupport {
+
+  /**
+   * Bounded version of <code>STM.retry()</code>, for use inside an atomic block.
+   * 
+   * The transaction is rolled back and blocks until one of the references 
+   * it read changes, as long as the total time spent blocking in this atomic
+   * block stays below the timeout. Once the timeout has elapsed the call
+   * returns normally and the transaction goes on.
+   * 
+   * @param timeoutNanos Timeout in nanoseconds.
+   */
+  static void retryFor(long timeoutNanos) {
+    InTxn txn = Txn.findCurrent(TxnUnknown$.MODULE$).get();
+    Txn.retryFor(timeoutNanos, TimeUnit.NANOSECONDS, txn);
+  }
+
+  /**
+   * Counted version of {@link #retryFor(long)}.
+   * @param counters Counters.
+   * @param timeoutNanos Timeout in nanoseconds.
+   */
+  static void retryFor(Counters counters, long timeoutNanos) {
+    counters.increment(Counters.Event.STM_RETRIES);
+    retryFor(timeoutNanos);
+  }
+
+  /**
+   * Count a resize of a backing array once the transaction commits.
+   * @param counters Counters.
+   * @param copied Number of elements copied.
+   */
+  static void resized(Counters counters, int copied) {
+    if (counters.enabled()) {
+      STM.afterCommit(() -> {
+        counters.increment(Counters.Event.RESIZES);
+        counters.add(Counters.Event.RESIZE_COPIES, copied);
+      });
+    }
+  }
+
+  /**
+   * Counted version of <code>STM.retry()</code>.
+   * @param counters Counters.
+   */
+  static void retry(Counters counters) {
+    counters.increment(Counters.Event.STM_RETRIES);
+    STM.retry();
+  }
+
+  /**
+   * Check if the calling thread is inside an atomic block.
+   * @return <code>true</code> if called inside a transaction.
+   */
+  static boolean inTransaction() {
+    return !Txn.findCurrent(TxnUnknown$.MODULE$).isEmpty();
+  }
+
+  /**
+   * Counted version of <code>STM.atomic(Runnable)</code>: executions of
+   * the block and commits are counted, unless the block is nested in
+   * another one (see {@link STMQueues}), since it then commits with the
+   * enclosing transaction.
+   * @param counters Counters.
+   * @param block Atomic block.
+   */
+  static void atomic(Counters counters, Runnable block) {
+    if (!counters.enabled() || inTransaction()) {
+      STM.atomic(block);
+      return;
+    }
+    STM.atomic(() -> {
+      counters.increment(Counters.Event.STM_ATTEMPTS);
+      block.run();
+    });
+    counters.increment(Counters.Event.STM_COMMITS);
+  }
+
+  /**
+   * Counted version of <code>STM.atomic(Callable)</code>: executions of
+   * the block and commits are counted, unless the block is nested in
+   * another one.
+   * @param <T> Type of result.
+   * @param counters Counters.
+   * @param block Atomic block.
+   * @return Result of the block.
+   */
+  static <T> T atomic(Counters counters, Callable<T> block) {
+    if (!counters.enabled() || inTransaction()) {
+      return STM.atomic(block);
+    }
+    T result = STM.atomic(() -> {
+      counters.increment(Counters.Event.STM_ATTEMPTS);
+      return block.call();
+    });
+    counters.increment(Counters.Event.STM_COMMITS);
+    return result;
+  }
+
+  // Private constructor (prevent undesirable instantiation).
+  private STMSupport() { }
+}
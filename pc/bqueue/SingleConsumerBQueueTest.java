@@ -0,0 +1,143 @@
+package pc.bqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cooperari.CSystem;
+import org.cooperari.config.CMaxTrials;
+import org.cooperari.config.CRaceDetection;
+import org.cooperari.config.CScheduling;
+import org.cooperari.core.scheduling.CProgramStateFactory;
+import org.cooperari.core.scheduling.CSchedulerFactory;
+import org.cooperari.junit.CJUnitRunner;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests for queues that allow a single consumer thread
+ * (and, unless stated otherwise, a single producer thread).
+ */
+@SuppressWarnings("javadoc")
+@RunWith(CJUnitRunner.class)
+@CMaxTrials(25)
+@CRaceDetection(false)
+@CScheduling(schedulerFactory=CSchedulerFactory.MEMINI, stateFactory=CProgramStateFactory.RAW)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public abstract class SingleConsumerBQueueTest {
+
+  abstract <T> BQueue<T> createBQueue(int capacity);
+
+  abstract boolean multipleProducers();
+
+  void test1(int capacity) {
+    BQueue<Integer> q = createBQueue(capacity);
+    List<Integer> a = new ArrayList<>();
+    CSystem.forkAndJoin(
+        () -> { for (int i = 1; i <= 5; i++) q.add(i); },
+        () -> { for (int i = 1; i <= 5; i++) a.add(q.remove()); }
+        );
+    assertEquals(0, q.size());
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), a);
+  }
+
+  @Test
+  public void test1_1() {
+    test1(1);
+  }
+
+  @Test
+  public void test1_3() {
+    test1(3);
+  }
+
+  @Test
+  public void test2() {
+    BQueue<Integer> q = createBQueue(2);
+    List<Integer> a = new ArrayList<>();
+    CSystem.forkAndJoin(
+        () -> { q.addAll(Arrays.asList(1, 2, 3)); q.add(4); q.addAll(Arrays.asList(5)); },
+        () -> {
+          int n = 0;
+          while (n < 5) {
+            n += q.drainTo(a, 5 - n);
+          }
+        }
+        );
+    assertEquals(0, q.size());
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), a);
+  }
+
+  @Test
+  public void test3() {
+    BQueue<Integer> q = createBQueue(1);
+    assertNull(q.poll());
+    assertTrue(q.offer(1));
+    if (q.hasFixedCapacity()) {
+      assertFalse(q.offer(10));
+      assertFalse(q.offer(10, 1, TimeUnit.MILLISECONDS));
+    } else {
+      assertTrue(q.offer(10));
+    }
+    assertEquals(1, (int) q.poll());
+    if (!q.hasFixedCapacity()) {
+      assertEquals(10, (int) q.poll());
+    }
+    assertNull(q.poll(1, TimeUnit.MILLISECONDS));
+    q.add(null);
+    assertEquals(1, q.size());
+    assertNull(q.remove());
+    assertEquals(0, q.size());
+  }
+
+  @Test
+  public void test4() {
+    if (!multipleProducers()) {
+      return;
+    }
+    BQueue<Integer> q = createBQueue(2);
+    AtomicInteger a = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> { q.add(1); q.add(2); },
+        () -> { q.addAll(Arrays.asList(10, 20)); },
+        () -> { q.add(100); },
+        () -> {
+          List<Integer> l = new ArrayList<>();
+          while (l.size() < 5) {
+            l.add(q.remove());
+          }
+          // Elements of the same producer keep their relative order.
+          assertTrue(l.indexOf(1) < l.indexOf(2));
+          assertTrue(l.indexOf(10) < l.indexOf(20));
+          a.set(l.stream().mapToInt(Integer::intValue).sum());
+        }
+        );
+    assertEquals(0, q.size());
+    assertEquals(133, a.get());
+  }
+
+  @Test
+  public void test5() {
+    // drainTo takes elements past the tail cached by an earlier poll
+    BQueue<Integer> q = createBQueue(4);
+    q.add(1);
+    q.add(2);
+    assertEquals(1, (int) q.poll());
+    q.add(3);
+    List<Integer> a = new ArrayList<>();
+    assertEquals(2, q.drainTo(a, 5));
+    assertEquals(Arrays.asList(2, 3), a);
+    assertNull(q.poll());
+    assertEquals(0, q.size());
+    q.add(4);
+    assertEquals(1, q.size());
+    assertEquals(4, (int) q.poll());
+    assertNull(q.poll());
+  }
+}
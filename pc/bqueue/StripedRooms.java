@@ -0,0 +1,185 @@
+package pc.bqueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import pc.util.PaddedAtomicInteger;
+
+/**
+ * Rooms utility class - variant with striped occupancy counters.
+ *
+ * Occupants of the open room are counted in an array of counters, each
+ * on a cache line of its own, and a thread always uses the same stripe.
+ * Threads entering an already open room therefore only touch their
+ * stripe, and they only read the global state word. That word changes
+ * only when the open room switches:
+ * <ul>
+ * <li><code>FREE</code>: no room open; an entrant opens its room.</li>
+ * <li><code>OPEN(r)</code>: room <code>r</code> admits entrants.</li>
+ * <li><code>CLOSING(r)</code>: a thread waiting for another room is
+ * checking whether room <code>r</code> is empty. Entrants of room
+ * <code>r</code> back off, and the room becomes <code>FREE</code> if
+ * it is empty or <code>OPEN(r)</code> again otherwise.</li>
+ * </ul>
+ * An entrant increments its stripe before it reads the state, and a
+ * closer writes the state before it sums the stripes, so an occupant is
+ * never missed.
+ */
+public final class StripedRooms implements RoomSynchronizer {
+
+  private static final int FREE = -1;
+
+  // Counters are STRIDE longs (a cache line) apart.
+  private static final int STRIDE = 8;
+
+  /**
+   * Number of rooms.
+   */
+  private final int numberOfRooms;
+
+  /**
+   * Wait strategy for entrants of a room that is not open.
+   */
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Global state: <code>FREE</code>, <code>2 * r</code> for
+   * <code>OPEN(r)</code>, or <code>2 * r + 1</code> for <code>CLOSING(r)</code>.
+   */
+  private final AtomicInteger state;
+
+  /**
+   * Occupancy counters.
+   */
+  private final AtomicLongArray stripes;
+
+  /**
+   * Number of stripes minus one (the number of stripes is a power of two).
+   */
+  private final int mask;
+
+  /**
+   * Constructor.
+   *
+   * Uses two stripes per available processor.
+   *
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @throws IllegalArgumentException if {@code n < 2}.
+   */
+  public StripedRooms(int n, WaitStrategy ws) throws IllegalArgumentException {
+    this(n, ws, 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param n Number of rooms.
+   * @param ws Wait strategy.
+   * @param stripes Number of stripes (rounded up to a power of two).
+   * @throws IllegalArgumentException if {@code n < 2} or {@code stripes <= 0}.
+   */
+  public StripedRooms(int n, WaitStrategy ws, int stripes) throws IllegalArgumentException {
+    if (n < 2 || stripes <= 0) {
+      throw new IllegalArgumentException();
+    }
+    int length = Integer.highestOneBit(stripes);
+    if (length < stripes) {
+      length *= 2;
+    }
+    numberOfRooms = n;
+    waitStrategy = ws;
+    state = new PaddedAtomicInteger(FREE);
+    this.stripes = new AtomicLongArray(length * STRIDE);
+    mask = length - 1;
+  }
+
+  @Override
+  public int count() {
+    return numberOfRooms;
+  }
+
+  @Override
+  public void enter(int r) {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    int stripe = stripe();
+    int attempt = 0;
+    while (true) {
+      int s = state.get();
+      if (s == 2 * r) {
+        stripes.getAndIncrement(stripe);
+        if (state.get() == 2 * r) {
+          return;
+        }
+        // room started closing meanwhile
+        stripes.getAndDecrement(stripe);
+      } else if (s == FREE) {
+        if (state.compareAndSet(FREE, 2 * r)) {
+          continue;
+        }
+      } else if ((s & 1) == 0) {
+        // another room is open: close it if it is empty
+        if (tryClose(s)) {
+          continue;
+        }
+      }
+      waitStrategy.idle(attempt++);
+    }
+  }
+
+  @Override
+  public void leave(int r) {
+    if (r < 0 || r >= numberOfRooms) {
+      throw new IllegalArgumentException();
+    }
+    int s = state.get();
+    if (s == FREE || s >> 1 != r) {
+      throw new IllegalStateException();
+    }
+    stripes.getAndDecrement(stripe());
+  }
+
+  /**
+   * Try to close an open room.
+   * @param open The <code>OPEN</code> state of that room.
+   * @return <code>true</code> if the room was closed.
+   */
+  private boolean tryClose(int open) {
+    if (!state.compareAndSet(open, open + 1)) {
+      return false;
+    }
+    long occupants = 0;
+    for (int i = 0; i < stripes.length(); i += STRIDE) {
+      occupants += stripes.get(i);
+    }
+    // only the closer may leave CLOSING
+    state.set(occupants == 0 ? FREE : open);
+    return occupants == 0;
+  }
+
+  /**
+   * Get the counter index of the calling thread.
+   * @return The index.
+   */
+  private int stripe() {
+    return ((int) Thread.currentThread().getId() & mask) * STRIDE;
+  }
+
+  @Override
+  public String toString() {
+    int s = state.get();
+    return s == FREE ? "FREE" : ((s & 1) == 0 ? "OPEN(" : "CLOSING(") + (s >> 1) + ")";
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends RoomsTest {
+    @Override
+    RoomSynchronizer createRooms(int numberOfRooms) {
+      return new StripedRooms(numberOfRooms, WaitStrategy.BUSY_SPIN);
+    }
+  }
+}
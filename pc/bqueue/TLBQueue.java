@@ -0,0 +1,323 @@
+package pc.bqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pc.util.UnexpectedException;
+
+/**
+ * Monitor-based implementation of queue using two locks.
+ *
+ * Following the two-lock queue of Michael and Scott, producers only
+ * contend on the put lock and consumers only on the take lock. Each side 
+ * waits on its own condition (<code>notFull</code> / <code>notEmpty</code>),
+ * and a single waiter is signalled at a time, instead of waking every
+ * blocked thread with <code>notifyAll()</code> as {@link MBQueue} does.
+ *
+ * @param <E> Type of elements.
+ */
+public class TLBQueue<E> implements BQueue<E> {
+
+  private final E[] array;
+  private int head; // guarded by takeLock
+  private int tail; // guarded by putLock
+  private final AtomicInteger count;
+
+  private final ReentrantLock putLock, takeLock;
+  private final Condition notFull, notEmpty;
+
+  /**
+   * Constructor.
+   * @param capacity Queue capacity.
+   * @throws IllegalArgumentException if {@code capacity <= 0}
+   */
+  @SuppressWarnings("unchecked")
+  public TLBQueue(int capacity) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException();
+    array = (E[]) new Object[capacity];
+    head = 0;
+    tail = 0;
+    count = new AtomicInteger(0);
+    putLock = new ReentrantLock();
+    takeLock = new ReentrantLock();
+    notFull = putLock.newCondition();
+    notEmpty = takeLock.newCondition();
+  }
+
+  @Override
+  public int capacity() {
+    return array.length;
+  }
+
+  @Override
+  public int size() {
+    return count.get();
+  }
+
+  @Override
+  public void add(E elem) {
+    int c;
+    putLock.lock();
+    try {
+      while (count.get() == array.length) {
+        // queue is full
+        notFull.await();
+      }
+      c = enqueue(elem);
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      putLock.unlock();
+    }
+    if (c == 0)
+      signalNotEmpty();
+  }
+
+  @Override
+  public E remove() {
+    E elem;
+    int c;
+    takeLock.lock();
+    try {
+      while (count.get() == 0) {
+        // queue is empty
+        notEmpty.await();
+      }
+      elem = dequeue();
+      c = count.getAndDecrement();
+      if (c > 1)
+        notEmpty.signal();
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      takeLock.unlock();
+    }
+    if (c == array.length)
+      signalNotFull();
+    return elem;
+  }
+
+  @Override
+  public boolean offer(E elem) {
+    if (count.get() == array.length)
+      return false;
+    int c = -1;
+    putLock.lock();
+    try {
+      if (count.get() < array.length)
+        c = enqueue(elem);
+    }
+    finally {
+      putLock.unlock();
+    }
+    if (c == 0)
+      signalNotEmpty();
+    return c >= 0;
+  }
+
+  @Override
+  public boolean offer(E elem, long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    int c;
+    putLock.lock();
+    try {
+      while (count.get() == array.length) {
+        if (nanos <= 0)
+          return false;
+        nanos = notFull.awaitNanos(nanos);
+      }
+      c = enqueue(elem);
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      putLock.unlock();
+    }
+    if (c == 0)
+      signalNotEmpty();
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    if (count.get() == 0)
+      return null;
+    E elem = null;
+    int c = -1;
+    takeLock.lock();
+    try {
+      if (count.get() > 0) {
+        elem = dequeue();
+        c = count.getAndDecrement();
+        if (c > 1)
+          notEmpty.signal();
+      }
+    }
+    finally {
+      takeLock.unlock();
+    }
+    if (c == array.length)
+      signalNotFull();
+    return elem;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    long nanos = unit.toNanos(timeout);
+    E elem;
+    int c;
+    takeLock.lock();
+    try {
+      while (count.get() == 0) {
+        if (nanos <= 0)
+          return null;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      elem = dequeue();
+      c = count.getAndDecrement();
+      if (c > 1)
+        notEmpty.signal();
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      takeLock.unlock();
+    }
+    if (c == array.length)
+      signalNotFull();
+    return elem;
+  }
+
+  @Override
+  public void addAll(Collection<? extends E> elems) {
+    boolean wasEmpty = false;
+    putLock.lock();
+    try {
+      for (E elem : elems) {
+        while (count.get() == array.length) {
+          // queue is full, consumers must know about what was added so far
+          if (wasEmpty) {
+            signalNotEmpty();
+            wasEmpty = false;
+          }
+          notFull.await();
+        }
+        if (enqueue(elem) == 0)
+          wasEmpty = true;
+      }
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      putLock.unlock();
+    }
+    if (wasEmpty)
+      signalNotEmpty();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> dst, int max) {
+    if (max <= 0)
+      throw new IllegalArgumentException();
+    int n, c;
+    takeLock.lock();
+    try {
+      while (count.get() == 0) {
+        // queue is empty
+        notEmpty.await();
+      }
+      n = Math.min(count.get(), max);
+      for (int i = 0; i < n; i++) {
+        dst.add(dequeue());
+      }
+      c = count.getAndAdd(-n);
+      if (c > n)
+        notEmpty.signal();
+    }
+    catch (InterruptedException e) {
+      throw new UnexpectedException(e);
+    }
+    finally {
+      takeLock.unlock();
+    }
+    if (c == array.length)
+      signalNotFull();
+    return n;
+  }
+
+  /**
+   * Store an element at the tail. Must be called holding the put lock,
+   * when the queue is not full.
+   * @param elem Element to add.
+   * @return Number of elements in the queue before the insertion.
+   */
+  private int enqueue(E elem) {
+    array[tail] = elem;
+    tail = (tail + 1) % array.length;
+    int c = count.getAndIncrement();
+    if (c + 1 < array.length) {
+      // let the next producer in, if any
+      notFull.signal();
+    }
+    return c;
+  }
+
+  /**
+   * Take the element at the head. Must be called holding the take lock,
+   * when the queue is not empty. The caller updates the element count.
+   * @return The element removed.
+   */
+  private E dequeue() {
+    E elem = array[head];
+    array[head] = null;
+    head = (head + 1) % array.length;
+    return elem;
+  }
+
+  /**
+   * Wake up one consumer, after the queue becomes non-empty.
+   */
+  private void signalNotEmpty() {
+    takeLock.lock();
+    try {
+      notEmpty.signal();
+    }
+    finally {
+      takeLock.unlock();
+    }
+  }
+
+  /**
+   * Wake up one producer, after the queue stops being full.
+   */
+  private void signalNotFull() {
+    putLock.lock();
+    try {
+      notFull.signal();
+    }
+    finally {
+      putLock.unlock();
+    }
+  }
+
+  /**
+   * Test instantiation.
+   */
+  public static final class Test extends BQueueTest {
+    @Override
+    <T> BQueue<T> createBQueue(int capacity) {
+      return new TLBQueue<>(capacity);
+    }
+  }
+}
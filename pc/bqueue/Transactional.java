@@ -0,0 +1,13 @@
+package pc.bqueue;
+
+/**
+ * Marker for structures whose operations are STM atomic blocks.
+ *
+ * Called inside another atomic block (see {@link STMQueues#atomic(Runnable)}),
+ * such operations join the enclosing transaction instead of committing on
+ * their own, so that operations on several structures compose into one
+ * atomic step. A blocking operation that cannot proceed makes the whole
+ * enclosing transaction wait.
+ */
+public interface Transactional {
+}
@@ -0,0 +1,283 @@
+package pc.bqueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free implementation of deque - work-stealing deque
+ * (after Chase and Lev, "Dynamic Circular Work-Stealing Deque").
+ *
+ * A single owner thread pushes and pops at the tail with
+ * <code>addLast</code> / <code>removeLast</code>; any other thread
+ * (a thief) steals from the head with <code>removeFirst</code>.
+ * The owner only uses a CAS when it races with thieves for the last
+ * element, and each steal is a single CAS on <code>top</code>.
+ * The circular array grows when full, only by the owner; thieves
+ * still reading the old array find the same elements there.
+ *
+ * The owner may also push at the head with <code>addFirst</code>, which
+ * stores the element before <code>top</code> and moves <code>top</code>
+ * back with a CAS. Since <code>top</code> then no longer only grows, it
+ * carries a tag bumped by each <code>addFirst</code>: a thief that read
+ * <code>top</code> before the move fails its CAS rather than stealing
+ * the element it read earlier (ABA).
+ *
+ * @param <E> Type of elements.
+ */
+public class WSDeque<E> implements BDeque<E> {
+
+  /**
+   * Marker returned by single removal attempts on an empty deque
+   * (<code>null</code> is a valid element).
+   */
+  private static final Object EMPTY = new Object();
+
+  // Layout of top: index in the low INDEX_BITS bits, tag above.
+  private static final int INDEX_BITS = 48;
+  private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+  private static final long TAG = 1L << INDEX_BITS;
+
+  // Initial index of both ends, leaving room for addFirst below it.
+  private static final long ORIGIN = 1L << (INDEX_BITS - 1);
+
+  // Index of the next element to steal, and tag (see index()); always
+  // moved with a CAS, by thieves, by the owner for the last element,
+  // and by addFirst.
+  private final AtomicLong top;
+
+  // Index of the next free slot; written by the owner only.
+  private final AtomicLong bottom;
+
+  // Circular array, with a power-of-two length.
+  private final AtomicReference<AtomicReferenceArray<Object>> array;
+
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial deque capacity.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @throws IllegalArgumentException if {@code initialCapacity <= 0}
+   */
+  public WSDeque(int initialCapacity, boolean backoff) {
+    this(initialCapacity, WaitStrategy.of(backoff));
+  }
+
+  /**
+   * Constructor.
+   * @param initialCapacity Initial deque capacity (rounded up to a
+   *                        power of two).
+   * @param ws Wait strategy for removals on an empty deque.
+   * @throws IllegalArgumentException if {@code initialCapacity <= 0}
+   */
+  public WSDeque(int initialCapacity, WaitStrategy ws) {
+    if (initialCapacity <= 0)
+      throw new IllegalArgumentException();
+    int length = Integer.highestOneBit(initialCapacity);
+    if (length < initialCapacity) {
+      length *= 2;
+    }
+    top = new AtomicLong(ORIGIN);
+    bottom = new AtomicLong(ORIGIN);
+    array = new AtomicReference<>(new AtomicReferenceArray<>(length));
+    waitStrategy = ws;
+  }
+
+  @Override
+  public int size() {
+    long t = index(top.get());
+    long b = bottom.get();
+    return (int) Math.max(0, b - t);
+  }
+
+  /**
+   * Push an element at the head. Owner thread only.
+   */
+  @Override
+  public void addFirst(E elem) {
+    while (true) {
+      long w = top.get();
+      long t = index(w);
+      long b = bottom.get();
+      AtomicReferenceArray<Object> a = array.get();
+      if (b - t >= a.length()) {
+        a = grow(a, t, b);
+      }
+      // The slot before the head holds no element, and thieves only
+      // read it with a stale top, which fails their CAS.
+      a.lazySet((int) (t - 1) & (a.length() - 1), elem);
+      if (top.compareAndSet(w, w - 1 + TAG)) {
+        return;
+      }
+      // a thief moved top; retry
+    }
+  }
+
+  /**
+   * Steal an element from the head, blocking while the deque is empty.
+   * May be called by any thread.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public E removeFirst() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = trySteal()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+    return (E) elem;
+  }
+
+  /**
+   * Push an element at the tail. Owner thread only.
+   */
+  @Override
+  public void addLast(E elem) {
+    long b = bottom.get();
+    long t = index(top.get());
+    AtomicReferenceArray<Object> a = array.get();
+    if (b - t >= a.length()) {
+      a = grow(a, t, b);
+    }
+    a.lazySet((int) b & (a.length() - 1), elem);
+    // release: a thief that sees the new bottom also sees the element
+    bottom.lazySet(b + 1);
+  }
+
+  /**
+   * Pop an element from the tail, blocking while the deque is empty.
+   * Owner thread only.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public E removeLast() {
+    Object elem;
+    int attempt = 0;
+    while ((elem = tryPop()) == EMPTY) {
+      waitStrategy.idle(attempt++);
+    }
+    return (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollFirst() {
+    Object elem = trySteal();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollFirst(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = trySteal()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollLast() {
+    Object elem = tryPop();
+    return elem == EMPTY ? null : (E) elem;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E pollLast(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    Object elem;
+    for (int attempt = 0; (elem = tryPop()) == EMPTY; attempt++) {
+      if (!Backoff.pause(attempt, deadline))
+        return null;
+    }
+    return (E) elem;
+  }
+
+  /**
+   * Replace the array by one twice as long. Owner thread only.
+   * @param a Current array.
+   * @param t Top index.
+   * @param b Bottom index.
+   * @return The new array.
+   */
+  private AtomicReferenceArray<Object> grow(AtomicReferenceArray<Object> a, long t, long b) {
+    AtomicReferenceArray<Object> n = new AtomicReferenceArray<>(a.length() * 2);
+    for (long i = t; i < b; i++) {
+      n.lazySet((int) i & (n.length() - 1), a.get((int) i & (a.length() - 1)));
+    }
+    array.set(n);
+    return n;
+  }
+
+  /**
+   * Single attempt at popping an element from the tail. Owner thread only.
+   * @return The element removed, or <code>EMPTY</code> if the deque was empty.
+   */
+  private Object tryPop() {
+    long b = bottom.get() - 1;
+    AtomicReferenceArray<Object> a = array.get();
+    // Volatile write then read: a concurrent thief either sees the
+    // smaller bottom or has its top increment seen here.
+    bottom.set(b);
+    long w = top.get();
+    long t = index(w);
+    if (t > b) {
+      // empty
+      bottom.set(b + 1);
+      return EMPTY;
+    }
+    int slot = (int) b & (a.length() - 1);
+    Object elem = a.get(slot);
+    if (t < b) {
+      // more than one element: no thief can reach this slot
+      a.lazySet(slot, null);
+      return elem;
+    }
+    // last element: race thieves for it
+    if (!top.compareAndSet(w, w + 1)) {
+      elem = EMPTY;
+    } else {
+      a.lazySet(slot, null);
+    }
+    bottom.set(b + 1);
+    return elem;
+  }
+
+  /**
+   * Single attempt at stealing an element from the head.
+   * @return The element removed, or <code>EMPTY</code> if the deque was empty.
+   */
+  private Object trySteal() {
+    while (true) {
+      long w = top.get();
+      long t = index(w);
+      long b = bottom.get();
+      if (t >= b) {
+        return EMPTY;
+      }
+      AtomicReferenceArray<Object> a = array.get();
+      Object elem = a.get((int) t & (a.length() - 1));
+      // The slot is not cleared: once top moves on, the owner may
+      // reuse it for a new element.
+      if (top.compareAndSet(w, w + 1)) {
+        return elem;
+      }
+      // lost the race with another thief or the owner; retry
+    }
+  }
+
+  /**
+   * Get the index part of a value of <code>top</code>.
+   * @param w Value of <code>top</code>.
+   * @return The index of the next element to steal.
+   */
+  private static long index(long w) {
+    return w & INDEX_MASK;
+  }
+}
@@ -0,0 +1,106 @@
+package pc.bqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cooperari.CSystem;
+import org.cooperari.config.CMaxTrials;
+import org.cooperari.config.CRaceDetection;
+import org.cooperari.config.CScheduling;
+import org.cooperari.core.scheduling.CProgramStateFactory;
+import org.cooperari.core.scheduling.CSchedulerFactory;
+import org.cooperari.junit.CJUnitRunner;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+
+@SuppressWarnings("javadoc")
+@RunWith(CJUnitRunner.class)
+@CMaxTrials(25)
+@CRaceDetection(false)
+@CScheduling(schedulerFactory=CSchedulerFactory.MEMINI, stateFactory=CProgramStateFactory.RAW)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class WSDequeTest {
+
+  void test1(int capacity) {
+    WSDeque<Integer> q = new WSDeque<>(capacity, false);
+    AtomicInteger a = new AtomicInteger(), b = new AtomicInteger(), c = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> { q.addLast(1); q.addLast(10); q.addLast(100); a.set(q.removeLast()); },
+        () -> b.set(q.removeFirst()),
+        () -> c.set(q.removeFirst())
+        );
+    assertEquals(0, q.size());
+    assertEquals(111, a.get() + b.get() + c.get());
+  }
+
+  @Test
+  public void test1_1() {
+    test1(1);
+  }
+
+  @Test
+  public void test1_4() {
+    test1(4);
+  }
+
+  @Test
+  public void test2() {
+    // Race for the last element between the owner and two thieves.
+    WSDeque<Integer> q = new WSDeque<>(2, false);
+    q.addLast(1);
+    AtomicInteger a = new AtomicInteger(), b = new AtomicInteger(), c = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> { Integer x = q.pollLast(); a.set(x == null ? 0 : x); },
+        () -> { Integer x = q.pollFirst(); b.set(x == null ? 0 : x); },
+        () -> { Integer x = q.pollFirst(); c.set(x == null ? 0 : x); }
+        );
+    assertEquals(0, q.size());
+    assertEquals(1, a.get() + b.get() + c.get());
+  }
+
+  @Test
+  public void test3() {
+    WSDeque<Integer> q = new WSDeque<>(2, false);
+    assertNull(q.pollFirst());
+    assertNull(q.pollLast());
+    assertNull(q.pollLast(1, TimeUnit.MILLISECONDS));
+    for (int i = 1; i <= 5; i++) {
+      q.addLast(i);
+    }
+    assertEquals(5, q.size());
+    // owner pops in LIFO order, thieves steal in FIFO order
+    assertEquals(5, (int) q.removeLast());
+    assertEquals(1, (int) q.removeFirst());
+    assertEquals(2, (int) q.pollFirst());
+    assertEquals(4, (int) q.pollLast(1, TimeUnit.MILLISECONDS));
+    assertEquals(3, (int) q.pollFirst(1, TimeUnit.MILLISECONDS));
+    assertEquals(0, q.size());
+    // the owner may push at the head too
+    q.addLast(6);
+    q.addFirst(7);
+    assertTrue(q.offerFirst(8));
+    assertEquals(3, q.size());
+    assertEquals(8, (int) q.pollFirst());
+    assertEquals(6, (int) q.pollLast());
+    assertEquals(7, (int) q.removeLast());
+    assertEquals(0, q.size());
+  }
+
+  @Test
+  public void test4() {
+    // The owner pushes at the head while thieves steal from it.
+    WSDeque<Integer> q = new WSDeque<>(1, false);
+    AtomicInteger a = new AtomicInteger(), b = new AtomicInteger(), c = new AtomicInteger();
+    CSystem.forkAndJoin(
+        () -> { q.addFirst(1); q.addLast(10); q.addFirst(100); a.set(q.removeLast()); },
+        () -> b.set(q.removeFirst()),
+        () -> c.set(q.removeFirst())
+        );
+    assertEquals(0, q.size());
+    assertEquals(111, a.get() + b.get() + c.get());
+  }
+}
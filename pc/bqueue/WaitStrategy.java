@@ -0,0 +1,181 @@
+package pc.bqueue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategy for idling in the retry loops of lock-free structures 
+ * (and of {@link Rooms}).
+ * 
+ * The caller counts the failed attempts of the current operation and
+ * passes that count in, so strategies keep no per-thread state.
+ * The constants below are stateless and may be shared by any number
+ * of structures.
+ */
+public interface WaitStrategy {
+
+  /**
+   * Idle before retrying a failed attempt.
+   * @param attempt Number of failed attempts so far in the current
+   *                operation (<code>0</code> on the first failure).
+   *                A negative count, once it wrapped around, is taken
+   *                as <code>Integer.MAX_VALUE</code>.
+   */
+  void idle(int attempt);
+
+  /**
+   * Report the completion of an operation that may have idled because
+   * of contention, e.g. a CAS lost to another thread.
+   * 
+   * Stateless strategies ignore it; adaptive ones (see
+   * {@link AdaptiveBackoff}) learn from it. Waits for a full or empty
+   * structure say nothing about contention, so callers do not report them.
+   * 
+   * @param attempts Number of failed attempts of the operation.
+   */
+  default void done(int attempts) { }
+
+  /**
+   * Busy-spin, hinting the processor with <code>Thread.onSpinWait()</code>.
+   */
+  WaitStrategy BUSY_SPIN = new BusySpin();
+
+  /**
+   * Spin for a while, then yield the processor on every retry.
+   */
+  WaitStrategy SPIN_THEN_YIELD = new SpinThenYield(100);
+
+  /**
+   * Spin, then yield, then park for short periods.
+   */
+  WaitStrategy SPIN_THEN_PARK = new SpinThenPark(100, 10, 1_000);
+
+  /**
+   * Randomized exponential back-off, parking up to {@link Backoff#MAX_DELAY}.
+   */
+  WaitStrategy EXPONENTIAL_SLEEP = new ExponentialSleep(Backoff.MIN_DELAY, Backoff.MAX_DELAY);
+
+  /**
+   * Strategy matching the former <code>boolean backoff</code> flag.
+   * @param backoff Flag to enable/disable the use of back-off.
+   * @return <code>EXPONENTIAL_SLEEP</code> if <code>backoff</code> is set,
+   *         <code>BUSY_SPIN</code> otherwise.
+   */
+  static WaitStrategy of(boolean backoff) {
+    return backoff ? EXPONENTIAL_SLEEP : BUSY_SPIN;
+  }
+
+  /**
+   * Busy-spin strategy.
+   */
+  final class BusySpin implements WaitStrategy {
+    @Override
+    public void idle(int attempt) {
+      Thread.onSpinWait();
+    }
+
+    @Override
+    public String toString() {
+      return "busy-spin";
+    }
+  }
+
+  /**
+   * Spin-then-yield strategy.
+   */
+  final class SpinThenYield implements WaitStrategy {
+    private final int spins;
+
+    /**
+     * Constructor.
+     * @param spins Number of attempts that only spin.
+     */
+    public SpinThenYield(int spins) {
+      this.spins = spins;
+    }
+
+    @Override
+    public void idle(int attempt) {
+      if (Backoff.saturate(attempt) < spins) {
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "spin-yield";
+    }
+  }
+
+  /**
+   * Spin-then-park strategy.
+   */
+  final class SpinThenPark implements WaitStrategy {
+    private final int spins, yields;
+    private final long parkNanos;
+
+    /**
+     * Constructor.
+     * @param spins Number of attempts that only spin.
+     * @param yields Number of attempts after that which yield.
+     * @param parkNanos Time to park on each later attempt, in nanoseconds.
+     */
+    public SpinThenPark(int spins, int yields, long parkNanos) {
+      this.spins = spins;
+      this.yields = yields;
+      this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public void idle(int attempt) {
+      attempt = Backoff.saturate(attempt);
+      if (attempt < spins) {
+        Thread.onSpinWait();
+      } else if (attempt - spins < yields) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(parkNanos);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "spin-park";
+    }
+  }
+
+  /**
+   * Randomized exponential back-off strategy.
+   * 
+   * The delay bound doubles on each attempt. It is derived from the
+   * attempt count (no thread-local state), and the thread parks instead
+   * of calling <code>Thread.sleep</code>, which rounds sub-millisecond
+   * delays up.
+   */
+  final class ExponentialSleep implements WaitStrategy {
+    private final int minDelay, maxDelay;
+
+    /**
+     * Constructor.
+     * @param minDelay Delay bound of the first attempt, in nanoseconds.
+     * @param maxDelay Maximum delay bound, in nanoseconds.
+     */
+    public ExponentialSleep(int minDelay, int maxDelay) {
+      this.minDelay = minDelay;
+      this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public void idle(int attempt) {
+      long bound = Math.min(maxDelay, (long) minDelay << Math.min(Backoff.saturate(attempt), 30));
+      LockSupport.parkNanos(1 + ThreadLocalRandom.current().nextLong(bound));
+    }
+
+    @Override
+    public String toString() {
+      return "exp-sleep";
+    }
+  }
+}
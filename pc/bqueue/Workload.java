@@ -0,0 +1,213 @@
+package pc.bqueue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Workload definition for the queue and deque benchmark programs,
+ * read from command-line options of the form <code>--name=value</code>
+ * (see {@link #USAGE}).
+ *
+ * Without <code>--producers</code> or <code>--consumers</code>, the
+ * programs sweep over 2, 4, ... <code>--max-threads</code> threads,
+ * half of them producers.
+ */
+final class Workload {
+
+  /**
+   * Arrival patterns of producers.
+   */
+  enum Arrival {
+    /** Producers add as fast as they can. */
+    STEADY,
+    /** Producers pause after bursts of, on average, <code>burst</code> elements. */
+    BURSTY
+  }
+
+  /**
+   * Deque usage patterns.
+   */
+  enum DequeMix {
+    /** Producers add at the tail, consumers remove at the tail. */
+    LIFO,
+    /** Producers add at the head, consumers remove at the tail. */
+    FIFO,
+    /** One owner pushes and pops at the tail, thieves poll the head. */
+    STEALING,
+    /** All threads add at the tail of a fresh deque, replaced once it holds <code>capacity</code> elements. */
+    GROWTH
+  }
+
+  static final String USAGE = String.join(System.lineSeparator(),
+      "Options:",
+      "  --producers=N      producer threads (default: half of each thread count)",
+      "  --consumers=N      consumer threads (default: half of each thread count)",
+      "  --max-threads=N    largest thread count of the sweep (default 32)",
+      "  --arrival=A        steady or bursty (default steady)",
+      "  --burst=N          mean burst length of bursty producers (default 64)",
+      "  --pause-us=N       pause after a burst, in microseconds (default 100)",
+      "  --payload=N        payload in bytes of object elements, 0 for boxed integers (default 0)",
+      "  --capacity=N       capacity of bounded queues (default max-threads squared)",
+      "  --deque-mix=M      lifo, fifo, stealing or growth (default: fifo, stealing and growth)",
+      "  --duration=N       measurement time per run, in seconds (default 5)",
+      "  --warmup=N         warm-up time per run, in seconds (default 0)",
+      "  --counters=B       true to report retries, waits and resizes (default false)");
+
+  int producers, consumers;
+  int maxThreads = 32;
+  Arrival arrival = Arrival.STEADY;
+  int burst = 64;
+  int pauseMicros = 100;
+  int payload;
+  int capacity;
+  DequeMix dequeMix;
+  int duration = 5;
+  int warmup;
+  boolean counters;
+
+  /**
+   * Parse command-line options.
+   * @param args Options.
+   * @return The workload.
+   * @throws IllegalArgumentException if an option is unknown or invalid.
+   */
+  static Workload parse(String[] args) throws IllegalArgumentException {
+    Workload w = new Workload();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (!arg.startsWith("--") || eq < 0) {
+        throw new IllegalArgumentException("Malformed option: " + arg);
+      }
+      String name = arg.substring(2, eq);
+      String value = arg.substring(eq + 1);
+      switch (name) {
+        case "producers":   w.producers = number(name, value, 0); break;
+        case "consumers":   w.consumers = number(name, value, 0); break;
+        case "max-threads": w.maxThreads = number(name, value, 2); break;
+        case "arrival":     w.arrival = Arrival.valueOf(value.toUpperCase()); break;
+        case "burst":       w.burst = number(name, value, 1); break;
+        case "pause-us":    w.pauseMicros = number(name, value, 0); break;
+        case "payload":     w.payload = number(name, value, 0); break;
+        case "capacity":    w.capacity = number(name, value, 1); break;
+        case "deque-mix":   w.dequeMix = DequeMix.valueOf(value.toUpperCase()); break;
+        case "duration":    w.duration = number(name, value, 1); break;
+        case "warmup":      w.warmup = number(name, value, 0); break;
+        case "counters":    w.counters = bool(name, value); break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+    if (w.producers + w.consumers == 1) {
+      throw new IllegalArgumentException("At least two threads are needed");
+    }
+    return w;
+  }
+
+  private static int number(String name, String value, int min) {
+    int n;
+    try {
+      n = Integer.parseInt(value);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+    }
+    if (n < min) {
+      throw new IllegalArgumentException("Value for " + name + " below " + min + ": " + value);
+    }
+    return n;
+  }
+
+  private static boolean bool(String name, String value) {
+    if (!value.equals("true") && !value.equals("false")) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+    }
+    return value.equals("true");
+  }
+
+  /**
+   * Set up event counters for a run.
+   * @param q Queue or deque of the run.
+   * @return New counters given to <code>q</code>, or <code>null</code>
+   *         if counters are off or <code>q</code> is not {@link Instrumentable}.
+   */
+  Counters counters(Object q) {
+    if (!counters || !(q instanceof Instrumentable)) {
+      return null;
+    }
+    Counters c = new Counters();
+    ((Instrumentable) q).setCounters(c);
+    return c;
+  }
+
+  /**
+   * Get the thread counts to run.
+   * @return <code>producers + consumers</code> if either is set, otherwise
+   *         powers of two from 2 to <code>maxThreads</code>.
+   */
+  int[] threadCounts() {
+    if (producers + consumers > 0) {
+      return new int[] { producers + consumers };
+    }
+    int n = 31 - Integer.numberOfLeadingZeros(maxThreads);
+    int[] counts = new int[n];
+    for (int i = 0; i < n; i++) {
+      counts[i] = 2 << i;
+    }
+    return counts;
+  }
+
+  /**
+   * Get the number of producers.
+   * @param threads Thread count of the run.
+   * @return Number of producers (threads below it produce).
+   */
+  int producers(int threads) {
+    return producers + consumers > 0 ? producers : threads / 2;
+  }
+
+  /**
+   * Get the capacity of bounded queues.
+   * @return The capacity.
+   */
+  int capacity() {
+    return capacity > 0 ? capacity : maxThreads * maxThreads;
+  }
+
+  /**
+   * Create an element to add.
+   * @param rng Random number generator of the calling thread.
+   * @return A boxed integer, or a byte array of <code>payload</code> bytes.
+   */
+  Object element(ThreadLocalRandom rng) {
+    if (payload == 0) {
+      return rng.nextInt(100);
+    }
+    byte[] data = new byte[payload];
+    data[0] = (byte) rng.nextInt();
+    return data;
+  }
+
+  /**
+   * Pace a producer after it added an element.
+   * @param rng Random number generator of the calling thread.
+   */
+  void pace(ThreadLocalRandom rng) {
+    if (arrival == Arrival.BURSTY && rng.nextInt(burst) == 0) {
+      LockSupport.parkNanos(pauseMicros * 1000L);
+    }
+  }
+
+  /**
+   * Check if single-consumer runs fit the workload.
+   * @return <code>true</code> if the consumers are not set, or set to one.
+   */
+  boolean allowsSingleConsumer() {
+    return producers + consumers == 0 || consumers == 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("arrival=%s payload=%d capacity=%d duration=%ds warmup=%ds",
+        arrival.name().toLowerCase(), payload, capacity(), duration, warmup);
+  }
+}
@@ -0,0 +1,126 @@
+package pc.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pc.bqueue.BDeque;
+import pc.bqueue.LFDeque;
+import pc.bqueue.STMChunkedDeque;
+import pc.bqueue.STMDeque;
+import pc.bqueue.STMPackedDeque;
+import pc.bqueue.STMSplitDeque;
+
+/**
+ * JMH benchmarks for the general-purpose deques.
+ *
+ * In <code>stack</code> and <code>queue</code> every thread offers at the
+ * tail, then polls the tail or the head. In <code>steal</code> one owner
+ * pushes and pops at the tail while thieves poll the head; other ratios
+ * can be set with the <code>-tg</code> option of JMH. Only the
+ * non-blocking <code>offerLast</code>, <code>pollFirst</code> and
+ * <code>pollLast</code> are used, so no thread is left blocked at the end
+ * of an iteration.
+ *
+ * {@link pc.bqueue.WSDeque} is left out, since only its owner thread may
+ * add or remove at the tail. The <code>backoff</code> parameter is ignored
+ * by the STM deques.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BDequeJMH {
+
+  private static final Integer ELEMENT = 42;
+
+  @Param({ "LFDeque", "STMDeque", "STMSplitDeque", "STMPackedDeque",
+           "STMChunkedDeque" })
+  String impl;
+
+  @Param({ "1024" })
+  int capacity;
+
+  @Param({ "false", "true" })
+  boolean backoff;
+
+  private BDeque<Integer> deque;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    switch (impl) {
+      case "LFDeque":
+        deque = new LFDeque<>(capacity, backoff);
+        break;
+      case "STMDeque":
+        deque = new STMDeque<>(capacity);
+        break;
+      case "STMSplitDeque":
+        deque = new STMSplitDeque<>();
+        break;
+      case "STMPackedDeque":
+        deque = new STMPackedDeque<>(capacity);
+        break;
+      case "STMChunkedDeque":
+        deque = new STMChunkedDeque<>();
+        break;
+      default:
+        throw new IllegalArgumentException(impl);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void drain() {
+    while (deque.pollFirst() != null) {
+      // drain
+    }
+  }
+
+  @Benchmark
+  @Group("stack")
+  @GroupThreads(4)
+  public Integer stack() {
+    deque.offerLast(ELEMENT);
+    return deque.pollLast();
+  }
+
+  @Benchmark
+  @Group("queue")
+  @GroupThreads(4)
+  public Integer queue() {
+    deque.offerLast(ELEMENT);
+    return deque.pollFirst();
+  }
+
+  @Benchmark
+  @Group("steal")
+  @GroupThreads(1)
+  public Integer owner() {
+    deque.offerLast(ELEMENT);
+    deque.offerLast(ELEMENT);
+    return deque.pollLast();
+  }
+
+  @Benchmark
+  @Group("steal")
+  @GroupThreads(3)
+  public Integer thief() {
+    return deque.pollFirst();
+  }
+}
@@ -0,0 +1,182 @@
+package pc.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pc.bqueue.BQueue;
+import pc.bqueue.LFBQueue;
+import pc.bqueue.LFBQueueU;
+import pc.bqueue.LFRingBQueue;
+import pc.bqueue.LFSegmentedBQueue;
+import pc.bqueue.MBQueue;
+import pc.bqueue.MBQueueU;
+import pc.bqueue.STMBQueue;
+import pc.bqueue.STMBQueueU;
+import pc.bqueue.STMPackedBQueue;
+import pc.bqueue.STMPackedBQueueU;
+import pc.bqueue.STMSplitBQueue;
+import pc.bqueue.STMSplitBQueueU;
+import pc.bqueue.TLBQueue;
+
+/**
+ * JMH benchmarks for the general-purpose queues.
+ *
+ * Each group (<code>spsc</code>, <code>mpsc</code>, <code>spmc</code>,
+ * <code>mpmc</code>) runs producers and consumers on a queue of its own;
+ * other ratios can be set with the <code>-tg</code> option of JMH.
+ * In <code>offerPoll</code> every thread offers then polls.
+ *
+ * Only the non-blocking <code>offer</code> and <code>poll</code> are used,
+ * so no thread is left blocked at the end of an iteration. Unbounded
+ * queues (for which <code>capacity</code> is the initial capacity) may
+ * grow during an iteration when producers outpace consumers, and are
+ * drained at its end. The <code>backoff</code> parameter is ignored by
+ * the blocking and STM queues.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BQueueJMH {
+
+  private static final Integer ELEMENT = 42;
+
+  @Param({ "MBQueue", "MBQueueU", "TLBQueue", "LFBQueue", "LFBQueueU",
+           "LFRingBQueue", "LFSegmentedBQueue", "STMBQueue", "STMBQueueU",
+           "STMSplitBQueue", "STMSplitBQueueU", "STMPackedBQueue", "STMPackedBQueueU" })
+  String impl;
+
+  @Param({ "1024" })
+  int capacity;
+
+  @Param({ "false", "true" })
+  boolean backoff;
+
+  private BQueue<Integer> queue;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    queue = create(impl, capacity, backoff);
+  }
+
+  @TearDown(Level.Iteration)
+  public void drain() {
+    while (queue.poll() != null) {
+      // drain
+    }
+  }
+
+  static BQueue<Integer> create(String impl, int capacity, boolean backoff) {
+    switch (impl) {
+      case "MBQueue":
+        return new MBQueue<>(capacity);
+      case "MBQueueU":
+        return new MBQueueU<>(capacity);
+      case "TLBQueue":
+        return new TLBQueue<>(capacity);
+      case "LFBQueue":
+        return new LFBQueue<>(capacity, backoff);
+      case "LFBQueueU":
+        return new LFBQueueU<>(capacity, backoff);
+      case "LFRingBQueue":
+        return new LFRingBQueue<>(capacity, backoff);
+      case "LFSegmentedBQueue":
+        return new LFSegmentedBQueue<>(capacity, backoff);
+      case "STMBQueue":
+        return new STMBQueue<>(capacity);
+      case "STMBQueueU":
+        return new STMBQueueU<>(capacity);
+      case "STMSplitBQueue":
+        return new STMSplitBQueue<>(capacity);
+      case "STMSplitBQueueU":
+        return new STMSplitBQueueU<>();
+      case "STMPackedBQueue":
+        return new STMPackedBQueue<>(capacity);
+      case "STMPackedBQueueU":
+        return new STMPackedBQueueU<>(capacity);
+      default:
+        throw new IllegalArgumentException(impl);
+    }
+  }
+
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public boolean spscOffer() {
+    return queue.offer(ELEMENT);
+  }
+
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public Integer spscPoll() {
+    return queue.poll();
+  }
+
+  @Benchmark
+  @Group("mpsc")
+  @GroupThreads(3)
+  public boolean mpscOffer() {
+    return queue.offer(ELEMENT);
+  }
+
+  @Benchmark
+  @Group("mpsc")
+  @GroupThreads(1)
+  public Integer mpscPoll() {
+    return queue.poll();
+  }
+
+  @Benchmark
+  @Group("spmc")
+  @GroupThreads(1)
+  public boolean spmcOffer() {
+    return queue.offer(ELEMENT);
+  }
+
+  @Benchmark
+  @Group("spmc")
+  @GroupThreads(3)
+  public Integer spmcPoll() {
+    return queue.poll();
+  }
+
+  @Benchmark
+  @Group("mpmc")
+  @GroupThreads(2)
+  public boolean mpmcOffer() {
+    return queue.offer(ELEMENT);
+  }
+
+  @Benchmark
+  @Group("mpmc")
+  @GroupThreads(2)
+  public Integer mpmcPoll() {
+    return queue.poll();
+  }
+
+  @Benchmark
+  @Group("offerPoll")
+  @GroupThreads(4)
+  public Integer offerPoll() {
+    queue.offer(ELEMENT);
+    return queue.poll();
+  }
+}
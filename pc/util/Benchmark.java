@@ -1,5 +1,7 @@
 package pc.util;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -7,6 +9,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class for performing throughput benchmarks.
+ * 
+ * Optionally, the latency of each step is recorded in a per-thread
+ * {@link Histogram}; the histograms are merged at the end of a run
+ * (see {@link #latency()}). The bytes allocated by the benchmark 
+ * threads and the garbage collections during a run can also be 
+ * accounted for (see {@link #bytesPerStep()} and {@link #gcMillis()}).
  */
 public final class Benchmark {
 
@@ -28,6 +36,12 @@ public final class Benchmark {
      */
     void step();
   }
+  /**
+   * Source of per-thread allocation counters.
+   */
+  private static final com.sun.management.ThreadMXBean ALLOCATION =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
   /**
    * Number of threads.
    */
@@ -57,6 +71,26 @@ public final class Benchmark {
    * Adder.
    */
   private final AtomicLong stepCounter;
+
+  /**
+   * Step latencies of the last run, in nanoseconds (or <code>null</code>).
+   */
+  private final Histogram latency;
+
+  /**
+   * Allocation and GC accounting flag.
+   */
+  private final boolean recordAllocation;
+
+  /**
+   * Bytes allocated by the benchmark threads in the last run.
+   */
+  private final AtomicLong allocatedBytes;
+
+  /**
+   * Garbage collections in the last run, and their total time.
+   */
+  private long gcCount, gcMillis;
   
 
   /**
@@ -66,21 +100,53 @@ public final class Benchmark {
    * @param op Step to execute.
    */
   public Benchmark(int n_threads, int duration, Operation op) {
+    this(n_threads, duration, op, false);
+  }
+
+  /**
+   * Constructor.
+   * @param n_threads Number of threads.
+   * @param duration Duration.
+   * @param op Step to execute.
+   * @param recordLatency Record the latency of each step.
+   */
+  public Benchmark(int n_threads, int duration, Operation op, boolean recordLatency) {
+    this(n_threads, duration, op, recordLatency, false);
+  }
+
+  /**
+   * Constructor.
+   * @param n_threads Number of threads.
+   * @param duration Duration.
+   * @param op Step to execute.
+   * @param recordLatency Record the latency of each step.
+   * @param recordAllocation Account for allocated bytes and garbage collections.
+   */
+  public Benchmark(int n_threads, int duration, Operation op, 
+                   boolean recordLatency, boolean recordAllocation) {
     this.n_threads = n_threads;
     this.duration = duration;
     this.operation = op;
     this.barrier = new CyclicBarrier(n_threads + 1);
     this.completionFlag = new AtomicBoolean();
     this.stepCounter = new AtomicLong();
+    this.latency = recordLatency ? new Histogram() : null;
+    this.recordAllocation = recordAllocation && ALLOCATION.isThreadAllocatedMemorySupported();
+    this.allocatedBytes = new AtomicLong();
+    if (this.recordAllocation) {
+      ALLOCATION.setThreadAllocatedMemoryEnabled(true);
+    }
   }
 
   @SuppressWarnings("javadoc")
   public class BThread extends Thread {
     long numberOfSteps = 0;
     final int tid;
+    final Histogram histogram;
     
     public BThread(int tid) {
       this.tid = tid;
+      this.histogram = latency != null ? new Histogram() : null;
     }
     
     public int getTId() {
@@ -91,9 +157,27 @@ public final class Benchmark {
     public void run()  {
       try {
         barrier.await();
-        while (! completionFlag.get()) {
-          operation.step();
-          numberOfSteps++; 
+        long bytes = recordAllocation ? ALLOCATION.getCurrentThreadAllocatedBytes() : 0;
+        if (histogram == null) {
+          while (! completionFlag.get()) {
+            operation.step();
+            numberOfSteps++; 
+          }
+        } else {
+          while (! completionFlag.get()) {
+            long start = System.nanoTime();
+            operation.step();
+            histogram.record(System.nanoTime() - start);
+            numberOfSteps++; 
+          }
+        }
+        if (recordAllocation) {
+          allocatedBytes.getAndAdd(ALLOCATION.getCurrentThreadAllocatedBytes() - bytes);
+        }
+        if (histogram != null) {
+          synchronized (latency) {
+            latency.merge(histogram);
+          }
         }
         stepCounter.getAndAdd(numberOfSteps);
         barrier.await();
@@ -115,6 +199,10 @@ public final class Benchmark {
   public final synchronized double run() {
     completionFlag.set(false);
     stepCounter.set(0L);
+    allocatedBytes.set(0L);
+    if (latency != null) {
+      latency.reset();
+    }
     operation.setup();
     for (int i = 0; i < n_threads; i++) {
       Thread t = new BThread(i);
@@ -122,6 +210,7 @@ public final class Benchmark {
       t.start();
     }
     long startTime = System.currentTimeMillis();
+    long[] gc0 = gcCountAndTime();
     try {
       barrier.await();
       Thread.sleep(duration * 1000);
@@ -132,8 +221,60 @@ public final class Benchmark {
     catch (InterruptedException | BrokenBarrierException e) {
       throw new RuntimeException(e);
     }
+    long[] gc1 = gcCountAndTime();
+    gcCount = gc1[0] - gc0[0];
+    gcMillis = gc1[1] - gc0[1];
     double totalTime = 1e-03 * ( System.currentTimeMillis() - startTime);
     return 1e-03 * stepCounter.get() / (totalTime * n_threads);
   }
 
+  /**
+   * Get the step latencies of the last run.
+   * @return Merged histogram of all threads, in nanoseconds, or 
+   *         <code>null</code> if latencies are not recorded.
+   */
+  public Histogram latency() {
+    return latency;
+  }
+
+  /**
+   * Get the bytes allocated per step in the last run.
+   * @return Bytes allocated by the benchmark threads over the number of 
+   *         steps, or <code>NaN</code> if allocation is not accounted for.
+   */
+  public double bytesPerStep() {
+    if (!recordAllocation) {
+      return Double.NaN;
+    }
+    long steps = stepCounter.get();
+    return steps == 0 ? 0 : (double) allocatedBytes.get() / steps;
+  }
+
+  /**
+   * Get the number of garbage collections in the last run.
+   * @return The count (<code>0</code> if allocation is not accounted for).
+   */
+  public long gcCount() {
+    return gcCount;
+  }
+
+  /**
+   * Get the time spent in garbage collection in the last run.
+   * @return Milliseconds (<code>0</code> if allocation is not accounted for).
+   */
+  public long gcMillis() {
+    return gcMillis;
+  }
+
+  private long[] gcCountAndTime() {
+    long count = 0, time = 0;
+    if (recordAllocation) {
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(0, gc.getCollectionCount());
+        time += Math.max(0, gc.getCollectionTime());
+      }
+    }
+    return new long[] { count, time };
+  }
+
 }
@@ -0,0 +1,137 @@
+package pc.util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative <code>long</code> values (e.g. latencies in
+ * nanoseconds), with log-linear buckets.
+ *
+ * Values below {@link #SUB_BUCKETS} get a bucket each. Every power-of-two
+ * range above that is split into {@link #SUB_BUCKETS} equal buckets, so a
+ * value is known to within 1/{@link #SUB_BUCKETS} of itself (about 3%).
+ * Recording does not allocate, and histograms can be merged.
+ *
+ * Instances are not thread-safe: use one per thread, then merge them.
+ */
+public final class Histogram {
+
+  private static final int SUB_BITS = 5;
+
+  /**
+   * Number of buckets per power of two.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private long count, sum, max;
+
+  /**
+   * Record a value.
+   * @param value Value (negative values count as <code>0</code>).
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts[index(value)]++;
+    count++;
+    sum += value;
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Add the values of another histogram to this one.
+   * @param other The other histogram.
+   */
+  public void merge(Histogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Clear all values.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  /**
+   * Get number of recorded values.
+   * @return The count.
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Get mean of the recorded values.
+   * @return The mean (<code>0</code> if empty).
+   */
+  public double mean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Get maximum recorded value.
+   * @return The maximum (<code>0</code> if empty).
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Get a percentile of the recorded values.
+   * @param p Percentile, between 0 and 100.
+   * @return Upper bound of the bucket holding the percentile, but no more
+   *         than the maximum (<code>0</code> if empty).
+   */
+  public long percentile(double p) {
+    long target = Math.max(1, (long) Math.ceil(count * p / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return Math.min(max, upperBound(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Get the usual latency percentiles as text.
+   * @return p50, p90, p99, p99.9 and maximum.
+   */
+  public String summary() {
+    return String.format("p50 %d p90 %d p99 %d p99.9 %d max %d",
+        percentile(50), percentile(90), percentile(99), percentile(99.9), max);
+  }
+
+  private static int index(long v) {
+    if (v < SUB_BUCKETS) {
+      return (int) v;
+    }
+    int e = 63 - Long.numberOfLeadingZeros(v);
+    int shift = e - SUB_BITS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((v >>> shift) - SUB_BUCKETS);
+  }
+
+  private static long upperBound(int i) {
+    if (i < SUB_BUCKETS) {
+      return i;
+    }
+    int shift = (i - SUB_BUCKETS) / SUB_BUCKETS;
+    long sub = SUB_BUCKETS + (i - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((sub + 1) << shift) - 1;
+  }
+}
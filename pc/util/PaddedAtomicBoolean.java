@@ -0,0 +1,22 @@
+package pc.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link AtomicBoolean} padded to a cache line of its own.
+ * 
+ * @see PaddedAtomicInteger
+ */
+@SuppressWarnings({"serial", "unused"})
+public final class PaddedAtomicBoolean extends AtomicBoolean {
+
+  private long p1, p2, p3, p4, p5, p6, p7;
+
+  /**
+   * Constructor.
+   * @param initialValue Initial value.
+   */
+  public PaddedAtomicBoolean(boolean initialValue) {
+    super(initialValue);
+  }
+}
@@ -0,0 +1,26 @@
+package pc.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AtomicInteger} padded to a cache line of its own.
+ * 
+ * Subclass fields are laid out after the value inherited from
+ * <code>AtomicInteger</code>, so the padding keeps the next object
+ * allocated back to back with this one (typically another hot counter)
+ * off the cache line holding the value. <code>@Contended</code> would do
+ * the same, but it is internal to the JDK and needs extra JVM flags.
+ */
+@SuppressWarnings({"serial", "unused"})
+public final class PaddedAtomicInteger extends AtomicInteger {
+
+  private long p1, p2, p3, p4, p5, p6, p7;
+
+  /**
+   * Constructor.
+   * @param initialValue Initial value.
+   */
+  public PaddedAtomicInteger(int initialValue) {
+    super(initialValue);
+  }
+}
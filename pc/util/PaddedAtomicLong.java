@@ -0,0 +1,22 @@
+package pc.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AtomicLong} padded to a cache line of its own.
+ * 
+ * @see PaddedAtomicInteger
+ */
+@SuppressWarnings({"serial", "unused"})
+public final class PaddedAtomicLong extends AtomicLong {
+
+  private long p1, p2, p3, p4, p5, p6, p7;
+
+  /**
+   * Constructor.
+   * @param initialValue Initial value.
+   */
+  public PaddedAtomicLong(long initialValue) {
+    super(initialValue);
+  }
+}
@@ -0,0 +1,23 @@
+package pc.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link AtomicReference} padded to a cache line of its own.
+ * 
+ * @param <V> Type of referenced values.
+ * @see PaddedAtomicInteger
+ */
+@SuppressWarnings({"serial", "unused"})
+public final class PaddedAtomicReference<V> extends AtomicReference<V> {
+
+  private long p1, p2, p3, p4, p5, p6, p7;
+
+  /**
+   * Constructor.
+   * @param initialValue Initial value.
+   */
+  public PaddedAtomicReference(V initialValue) {
+    super(initialValue);
+  }
+}